@@ -0,0 +1,151 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Responses of the GitHub, Curseforge (servermods) and spiget APIs.
+ * <p>
+ * The responses follow the fields and order of recorded responses, the number of releases
+ * and the size of the descriptions vary so the decoding cost can be measured against the payload size.
+ */
+public class Fixtures {
+
+    /**
+     * This class cannot be instantiate.
+     * Use static functions below.
+     */
+    private Fixtures() {
+    }
+
+    /**
+     * GitHub /repos/{owner}/{repo}/releases, newest first
+     *
+     * @param releases number of releases
+     * @return json response
+     */
+    public static String githubReleases(int releases) {
+        StringBuilder json = new StringBuilder("[");
+        for(int i = 0; i < releases; i++) {
+            if(i > 0) json.append(',');
+            githubRelease(json, i, "1." + (releases - i) + ".0");
+        }
+        return json.append("]").toString();
+    }
+
+    /**
+     * GitHub /repos/{owner}/{repo}/releases/latest
+     *
+     * @param releases number of releases of the repository
+     * @return json response
+     */
+    public static String githubLatest(int releases) {
+        StringBuilder json = new StringBuilder();
+        githubRelease(json, 0, "1." + releases + ".0");
+        return json.toString();
+    }
+
+    private static void githubRelease(StringBuilder json, int i, String version) {
+        json.append("{\"url\":\"https://api.github.com/repos/hexocraft/plugin/releases/").append(1000 + i).append("\",")
+                .append("\"html_url\":\"https://github.com/hexocraft/plugin/releases/tag/v").append(version).append("\",")
+                .append("\"id\":").append(1000 + i).append(",")
+                .append("\"author\":{\"login\":\"hexosse\",\"id\":1,\"type\":\"User\",\"site_admin\":false},")
+                .append("\"tag_name\":\"v").append(version).append("\",")
+                .append("\"target_commitish\":\"master\",")
+                .append("\"name\":\"Plugin v").append(version).append("\",")
+                .append("\"draft\":false,\"prerelease\":false,")
+                .append("\"created_at\":\"2020-01-01T00:00:00Z\",\"published_at\":\"2020-01-01T00:00:00Z\",")
+                .append("\"assets\":[{\"name\":\"plugin-").append(version).append(".jar\",\"content_type\":\"application/java-archive\",\"size\":123456,")
+                .append("\"browser_download_url\":\"https://github.com/hexocraft/plugin/releases/download/v").append(version).append("/plugin-").append(version).append(".jar\"}],")
+                .append("\"body\":\"").append(text(i, 2000)).append("\"}");
+    }
+
+    /**
+     * Curseforge /servermods/files?projectIds=..., oldest first
+     *
+     * @param files number of files
+     * @return json response
+     */
+    public static String servermodsFiles(int files) {
+        StringBuilder json = new StringBuilder("[");
+        for(int i = 0; i < files; i++) {
+            String version = "1." + i + ".0";
+            if(i > 0) json.append(',');
+            json.append("{\"downloadUrl\":\"https://edge.forgecdn.net/files/").append(1000 + i).append("/plugin-").append(version).append(".jar\",")
+                    .append("\"fileName\":\"plugin-").append(version).append(".jar\",")
+                    .append("\"fileUrl\":\"https://dev.bukkit.org/projects/plugin/files/").append(1000 + i).append("\",")
+                    .append("\"gameVersion\":\"1.15.2\",")
+                    .append("\"md5\":\"0123456789abcdef0123456789abcdef\",")
+                    .append("\"name\":\"Plugin v").append(version).append("\",")
+                    .append("\"projectId\":255160,")
+                    .append("\"releaseType\":\"").append(i % 3 == 0 ? "beta" : "release").append("\"}");
+        }
+        return json.append("]").toString();
+    }
+
+    /**
+     * spiget /v2/resources/{id}
+     *
+     * @return json response
+     */
+    public static String spigetResource() {
+        return "{\"external\":false,\"file\":{\"type\":\".jar\",\"size\":120,\"sizeUnit\":\"KB\",\"url\":\"resources/plugin.9163/download?version=300000\"},"
+                + "\"description\":\"" + Base64.getEncoder().encodeToString(text(0, 4000).getBytes(StandardCharsets.UTF_8)) + "\","
+                + "\"likes\":100,\"testedVersions\":[\"1.8\",\"1.15\"],\"links\":{},\"name\":\"Plugin\",\"tag\":\"A plugin\","
+                + "\"version\":{\"id\":300000},\"author\":{\"id\":1},\"category\":{\"id\":1},\"rating\":{\"count\":10,\"average\":5},"
+                + "\"releaseDate\":1500000000,\"updateDate\":1580000000,\"downloads\":10000,\"premium\":false,\"id\":9163}";
+    }
+
+    /**
+     * spiget /v2/resources/{id}/versions/latest
+     *
+     * @return json response
+     */
+    public static String spigetVersion() {
+        return "{\"uuid\":\"00000000-0000-0000-0000-000000000000\",\"name\":\"1.2.0\",\"releaseDate\":1580000000,\"downloads\":100,"
+                + "\"rating\":{\"count\":0,\"average\":0},\"id\":300000}";
+    }
+
+    /**
+     * spiget /v2/resources/{id}/updates/latest
+     *
+     * @param size size of the description before encoding
+     * @return json response
+     */
+    public static String spigetUpdate(int size) {
+        return "{\"resource\":9163,\"title\":\"Plugin v1.2.0\",\"description\":\""
+                + Base64.getEncoder().encodeToString(text(1, size).getBytes(StandardCharsets.UTF_8))
+                + "\",\"date\":1580000000,\"likes\":2,\"id\":30000}";
+    }
+
+    /**
+     * Random markdown like text, without characters to escape
+     */
+    private static String text(int seed, int size) {
+        String[] words = {"Fixed", "a", "bug", "when", "the", "server", "reloads", "- Added", "support", "for", "1.15", "\\n"};
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(size + 16);
+        while(text.length() < size) {
+            text.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater;
+
+import com.github.hexocraft.updater.channels.BukkitChannel;
+import com.github.hexocraft.updater.channels.Channel;
+import com.github.hexocraft.updater.channels.GithubChannel;
+import com.github.hexocraft.updater.channels.SpigotChannel;
+import com.github.hexocraft.updater.channels.StandInApi;
+import com.github.hexocraft.updater.enumeration.Result;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run many {@link Updater} against a local stand-in of the GitHub, Curseforge and spiget APIs.
+ * The updaters are registered with the {@link UpdateManager}, which triggers each round of checks.
+ * <p>
+ * Reports the threads created, the heap retained by each updater, the latency of the checks and the request rate.
+ * Options: --updaters 500 --rounds 5 --latency 50 --errors 0.01 --releases 30 --server-threads 200
+ * <p>
+ * {@code java -cp benchmarks/target/benchmarks.jar com.github.hexocraft.updater.ScaleTest --updaters 1000}
+ */
+public class ScaleTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = options(args);
+        int updaters = Integer.parseInt(options.getOrDefault("updaters", "500"));
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "5"));
+        long latency = Long.parseLong(options.getOrDefault("latency", "50"));
+        double errors = Double.parseDouble(options.getOrDefault("errors", "0.01"));
+        int releases = Integer.parseInt(options.getOrDefault("releases", "30"));
+        int serverThreads = Integer.parseInt(options.getOrDefault("server-threads", "200"));
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        try(StandInApi api = new StandInApi(latency, errors, releases, serverThreads)) {
+            api.redirect();
+            UpdateManager.window = 0;
+
+            long startedThreads = threads.getTotalStartedThreadCount();
+            threads.resetPeakThreadCount();
+            int baseThreads = threads.getThreadCount();
+            long baseHeap = usedHeap(memory);
+
+            // Updaters spread over the three APIs
+            List<Updater<?>> list = new ArrayList<>(updaters);
+            Version current = new Version(1, 0, 0);
+            for(int i = 0; i < updaters; i++) {
+                Channel channel = i % 3 == 0 ? new GithubChannel("hexocraft/plugin-" + i) : i % 3 == 1 ? new BukkitChannel(String.valueOf(i)) : new SpigotChannel(String.valueOf(i));
+                // Registered with the manager, the rounds are triggered below instead of the first check
+                list.add(new Updater<>(current, channel).setDownload(false).setDelay(TimeUnit.DAYS.toMillis(1)).run());
+            }
+
+            System.out.printf("%d updaters, %d rounds, latency %dms, errors %.1f%%, %d releases%n", updaters, rounds, latency, errors * 100, releases);
+            System.out.println("round      p50      p90      p99      max    req/s  304  results");
+
+            for(int round = 1; round <= rounds; round++) {
+                long requests = api.requests();
+                long notModified = api.notModified();
+                Map<Result, Integer> results = new EnumMap<>(Result.class);
+
+                // Every group checks its updaters, as on its period
+                long start = System.nanoTime();
+                List<CompletableFuture<Result>> started = UpdateManager.get().checkAll();
+                long[] latencies = new long[started.size()];
+                List<CompletableFuture<?>> checks = new ArrayList<>(started.size());
+                for(int i = 0; i < started.size(); i++) {
+                    int index = i;
+                    checks.add(started.get(i).thenAccept(result -> {
+                        latencies[index] = System.nanoTime() - start;
+                        synchronized(results) {
+                            results.merge(result, 1, Integer::sum);
+                        }
+                    }));
+                }
+                CompletableFuture.allOf(checks.toArray(new CompletableFuture<?>[0])).join();
+                long elapsed = System.nanoTime() - start;
+
+                Arrays.sort(latencies);
+                System.out.printf("%5d %7.1fms %7.1fms %7.1fms %7.1fms %8.0f %4d  %s%n", round,
+                        percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99), percentile(latencies, 100),
+                        (api.requests() - requests) * 1e9 / elapsed, api.notModified() - notModified, results);
+            }
+
+            long retainedHeap = usedHeap(memory) - baseHeap;
+            System.out.printf("threads created: %d, peak threads: +%d, heap retained per updater: %d bytes%n",
+                    threads.getTotalStartedThreadCount() - startedThreads, threads.getPeakThreadCount() - baseThreads, retainedHeap / updaters);
+            System.out.printf("requests: %d, 304: %d, errors: %d%n", api.requests(), api.notModified(), api.errors());
+
+            // Keep the updaters reachable until the heap is measured
+            list.forEach(Updater::stop);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Heap used after a full collection
+     */
+    private static long usedHeap(MemoryMXBean memory) throws InterruptedException {
+        for(int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * @param sorted sorted latencies in nanoseconds
+     * @return percentile in milliseconds, 0 if no check was started
+     */
+    private static double percentile(long[] sorted, int percentile) {
+        if(sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    /**
+     * Read "--name value" options
+     */
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for(int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        return options;
+    }
+}
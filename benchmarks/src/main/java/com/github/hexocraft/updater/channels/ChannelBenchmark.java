@@ -0,0 +1,92 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.channels;
+
+import com.github.hexocraft.updater.Fixtures;
+import com.github.hexocraft.updater.Update;
+import com.github.hexocraft.updater.enumeration.Result;
+import javafx.util.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of the channel responses, by number of releases in the response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ChannelBenchmark {
+
+    @Param({"1", "30", "100"})
+    public int releases;
+
+    private String githubLatest;
+    private String servermods;
+    private String spigetResource;
+    private String spigetUpdate;
+
+    @Setup
+    public void setup() {
+        githubLatest = Fixtures.githubLatest(releases);
+        servermods = Fixtures.servermodsFiles(releases);
+        spigetResource = Fixtures.spigetResource();
+        spigetUpdate = Fixtures.spigetUpdate(releases * 200);
+    }
+
+    @Benchmark
+    public Pair<Result,Update> githubLatest() throws IOException {
+        return GithubChannel.parseLatest(new StringReader(githubLatest));
+    }
+
+    @Benchmark
+    public Pair<Result,Update> servermods() throws IOException {
+        return BukkitChannel.parse(new StringReader(servermods));
+    }
+
+    @Benchmark
+    public Map<String, Pair<Result,Update>> servermodsProjects() throws IOException {
+        return BukkitChannel.parseProjects(new StringReader(servermods));
+    }
+
+    @Benchmark
+    public Update spigetResource() throws IOException {
+        return SpigotChannel.parseResource(new StringReader(spigetResource));
+    }
+
+    @Benchmark
+    public String spigetUpdate() throws IOException {
+        return SpigotChannel.parseDescription(new StringReader(spigetUpdate));
+    }
+}
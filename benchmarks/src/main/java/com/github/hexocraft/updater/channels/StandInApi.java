@@ -0,0 +1,172 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.channels;
+
+import com.github.hexocraft.updater.Fixtures;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local HTTP server answering like the GitHub, Curseforge (servermods) and spiget APIs.
+ * <p>
+ * Responses are delayed by a fixed latency, fail with a 500 at a given rate and hold a given number of releases.
+ * ETags are sent and honored, so conditional requests get a 304 like on the real APIs.
+ * Channels created after {@link #redirect()} query this server.
+ */
+public class StandInApi implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor executor;
+    private final long latency;
+    private final double errorRate;
+
+    private final byte[] github;
+    private final byte[] githubLatest;
+    private final byte[] servermods;
+    private final byte[] spigetResource;
+    private final byte[] spigetVersion;
+    private final byte[] spigetUpdate;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private String githubHost;
+    private String bukkitHost;
+    private String spigetHost;
+    private long window;
+
+
+    /**
+     * @param latency   delay of each response in milliseconds
+     * @param errorRate part of the requests answered with a 500, between 0 and 1
+     * @param releases  number of releases in the responses
+     * @param threads   number of server threads
+     * @throws IOException if the server cannot be started
+     */
+    public StandInApi(long latency, double errorRate, int releases, int threads) throws IOException {
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.github = Fixtures.githubReleases(releases).getBytes(StandardCharsets.UTF_8);
+        this.githubLatest = Fixtures.githubLatest(releases).getBytes(StandardCharsets.UTF_8);
+        this.servermods = Fixtures.servermodsFiles(releases).getBytes(StandardCharsets.UTF_8);
+        this.spigetResource = Fixtures.spigetResource().getBytes(StandardCharsets.UTF_8);
+        this.spigetVersion = Fixtures.spigetVersion().getBytes(StandardCharsets.UTF_8);
+        this.spigetUpdate = Fixtures.spigetUpdate(releases * 200).getBytes(StandardCharsets.UTF_8);
+
+        // Threads are started now, so they are not counted as threads created by the updaters
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        this.executor.prestartAllCoreThreads();
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.server.createContext("/repos/", exchange -> respond(exchange, exchange.getRequestURI().getPath().endsWith("/releases/latest") ? githubLatest : github));
+        this.server.createContext("/servermods/", exchange -> respond(exchange, servermods));
+        this.server.createContext("/v2/resources/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            respond(exchange, path.endsWith("/versions/latest") ? spigetVersion : path.endsWith("/updates/latest") ? spigetUpdate : spigetResource);
+        });
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    /**
+     * Point the channels to this server.
+     * Only channels created afterwards are affected.
+     * Finished requests are not reused, so that every round reaches the server.
+     */
+    public void redirect() {
+        window = Flights.requests.getWindow();
+        Flights.requests.setWindow(0);
+        String host = "http://127.0.0.1:" + server.getAddress().getPort();
+        githubHost = GithubChannel.host;
+        bukkitHost = BukkitChannel.host;
+        spigetHost = SpigotChannel.spiget;
+        GithubChannel.host = host;
+        BukkitChannel.host = host;
+        SpigotChannel.spiget = host;
+    }
+
+    private void respond(HttpExchange exchange, byte[] body) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if(latency > 0) {
+                Thread.sleep(latency);
+            }
+
+            if(errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errors.incrementAndGet();
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+
+            String etag = "\"" + Integer.toHexString(System.identityHashCode(body)) + "\"";
+            exchange.getResponseHeaders().add("ETag", etag);
+            if(etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try(OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public long notModified() {
+        return notModified.get();
+    }
+
+    public long errors() {
+        return errors.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        if(githubHost != null) {
+            GithubChannel.host = githubHost;
+            BukkitChannel.host = bukkitHost;
+            SpigotChannel.spiget = spigetHost;
+            Flights.requests.setWindow(window);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@link Downloader} throughput against an in-process HTTP server.
+ * <p>
+ * Files of {@link Downloader#SEGMENTED_SIZE} and more are downloaded in segments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DownloaderBenchmark {
+
+    @Param({"65536", "1048576", "16777216"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean checksum;
+
+    private HttpServer server;
+    private URL url;
+    private Checksum expected;
+    private Path folder;
+
+    @Setup
+    public void setup() throws Exception {
+        byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/plugin.jar", exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int start = 0;
+            int end = content.length - 1;
+            if(range != null) {
+                String[] bounds = range.substring(6).split("-", -1);
+                start = Integer.parseInt(bounds[0]);
+                if(!bounds[1].isEmpty()) end = Integer.parseInt(bounds[1]);
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+            }
+            exchange.getResponseHeaders().add("ETag", "\"plugin\"");
+            exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+            exchange.sendResponseHeaders(range != null ? 206 : 200, end + 1 - start);
+            try(OutputStream output = exchange.getResponseBody()) {
+                output.write(content, start, end + 1 - start);
+            }
+        });
+        server.start();
+
+        url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/plugin.jar");
+        StringBuilder hex = new StringBuilder();
+        for(byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+            hex.append(String.format("%02x", b));
+        }
+        expected = checksum ? Checksum.parse("sha256:" + hex) : null;
+        folder = Files.createTempDirectory("updater-benchmark");
+    }
+
+    @TearDown(Level.Invocation)
+    public void clean() throws IOException {
+        try(Stream<Path> files = Files.list(folder)) {
+            for(Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.stop(0);
+        Files.deleteIfExists(folder);
+    }
+
+    @Benchmark
+    public boolean download() throws IOException {
+        return Downloader.downloadFile(url, folder, expected);
+    }
+}
@@ -44,6 +44,16 @@ public class Update {
      */
     private String description;
 
+    /**
+     * Expected digest of the downloaded file, as "algorithm:hex".
+     */
+    private String digest;
+
+    /**
+     * Release time in epoch milliseconds, 0 if unknown.
+     */
+    private long released;
+
 
     public Update(String title, Version version) {
         this(title, version, null, null);
@@ -93,6 +103,35 @@ public class Update {
         return description;
     }
 
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
+
+    public String digest() {
+        return digest;
+    }
+
+    /**
+     * @param released release time in epoch milliseconds, 0 if unknown
+     */
+    public void setReleased(long released) {
+        this.released = released;
+    }
+
+    public long released() {
+        return released;
+    }
+
+    /**
+     * @return a copy of this update, so several updaters can share a result
+     */
+    public Update copy() {
+        Update update = new Update(title, version, downloadUrl, description);
+        update.setDigest(digest);
+        update.setReleased(released);
+        return update;
+    }
+
     /**
      * @return joined update string.
      */
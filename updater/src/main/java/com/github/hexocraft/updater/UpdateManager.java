@@ -0,0 +1,462 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater;
+
+import com.github.hexocraft.updater.channels.Channel;
+import com.github.hexocraft.updater.enumeration.Result;
+import com.github.hexocraft.updater.utilities.Backoff;
+import com.github.hexocraft.updater.utilities.Scheduler;
+import com.github.hexocraft.updater.utilities.Validator;
+import javafx.util.Pair;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * JVM-wide registry of the running {@link Updater}.
+ * <p>
+ * Updaters reading the same channel ({@link Channel#id()}: same url and credentials) form a group.
+ * A group is checked once per cycle, at the shortest period of its updaters, and the result
+ * is given to every updater of the group. Upstream traffic grows with the number of sources,
+ * not with the number of plugins.
+ * <p>
+ * A group whose last query failed backs off: its updaters skip the cycle and retry together,
+ * with a single query, after a delay growing with the consecutive failures.
+ */
+public class UpdateManager {
+
+    /**
+     * Shared instance.
+     */
+    private static final UpdateManager instance = new UpdateManager();
+
+    /**
+     * Logger of the failed checks.
+     */
+    private static final Logger logger = Logger.getLogger(UpdateManager.class.getName());
+
+    /**
+     * Time during which the result of a query is given to the updaters reading the same channel.
+     */
+    static long window = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Groups, by channel id.
+     */
+    private final Map<String, Group> groups = new HashMap<>();
+
+    /**
+     * Group of each registered updater.
+     */
+    private final Map<Updater<?>, Group> members = new IdentityHashMap<>();
+
+    /**
+     * Last query, by channel id.
+     */
+    private final Map<String, Query> queries = new HashMap<>();
+
+
+    /**
+     * @return shared instance
+     */
+    public static UpdateManager get() {
+        return instance;
+    }
+
+    /**
+     * Register an updater.
+     * <p>
+     * The first check is run after the updater delay, the next ones at the group period.
+     *
+     * @param updater updater to register
+     * @param channel channel of the updater
+     * @param delay      delay before the first check in milliseconds, the check is not scheduled if 0 or less
+     * @param period     period of the checks in milliseconds, 0 or less for none
+     * @param maxBackoff maximum delay before trying again after failed checks in milliseconds
+     */
+    synchronized void register(Updater<?> updater, Channel channel, long delay, long period, long maxBackoff) {
+        unregister(updater);
+
+        channel.register();
+        Group group = groups.computeIfAbsent(channel.id(), Group::new);
+        Member member = new Member(channel, period, maxBackoff);
+        if(delay > 0) {
+            member.first = Scheduler.schedule(updater::findUpdate, delay);
+        }
+        group.members.put(updater, member);
+        members.put(updater, group);
+        schedule(group);
+    }
+
+    /**
+     * Unregister an updater and cancel its checks.
+     *
+     * @param updater updater to unregister
+     */
+    synchronized void unregister(Updater<?> updater) {
+        Group group = members.remove(updater);
+        if(group == null) {
+            return;
+        }
+
+        Member member = group.members.remove(updater);
+        if(member.first != null) {
+            member.first.cancel(false);
+        }
+        if(group.members.values().stream().noneMatch(other -> other.channel == member.channel)) {
+            member.channel.unregister();
+        }
+        if(group.members.isEmpty()) {
+            groups.remove(group.id);
+            queries.remove(group.id);
+            if(group.retry != null) {
+                group.retry.cancel(false);
+                group.retry = null;
+            }
+        }
+        schedule(group);
+    }
+
+    /**
+     * Change the period of an updater, the group is rescheduled if its shortest period changed.
+     *
+     * @param updater updater to change
+     * @param period  period of the checks in milliseconds, 0 or less for none
+     */
+    synchronized void setPeriod(Updater<?> updater, long period) {
+        Group group = members.get(updater);
+        if(group == null) {
+            return;
+        }
+        group.members.get(updater).period = period;
+        schedule(group);
+    }
+
+    /**
+     * Delay before the next check of the group of an updater, after failed queries.
+     *
+     * @param updater updater to test
+     * @return delay in milliseconds, 0 after a successful query or if the updater is not registered
+     */
+    synchronized long retryDelay(Updater<?> updater) {
+        Group group = members.get(updater);
+        return group != null ? group.retryDelay : 0;
+    }
+
+    /**
+     * @param updater updater to test
+     * @return true if a check of the updater is scheduled
+     */
+    synchronized boolean isScheduled(Updater<?> updater) {
+        Group group = members.get(updater);
+        if(group == null) {
+            return false;
+        }
+        Member member = group.members.get(updater);
+        return (member.first != null && !member.first.isDone()) || member.period > 0;
+    }
+
+    /**
+     * @return number of registered updaters
+     */
+    public synchronized int updaters() {
+        return members.size();
+    }
+
+    /**
+     * @return number of groups, which is the number of sources queried
+     */
+    public synchronized int groups() {
+        return groups.size();
+    }
+
+    /**
+     * @return number of queries kept for their channel
+     */
+    synchronized int queries() {
+        return queries.size();
+    }
+
+    /**
+     * Read a channel.
+     * <p>
+     * The query in progress, or succeeded during the window, for the same channel is reused.
+     * A failed query is not reused once done, the group retries after its backoff.
+     * Every caller gets its own copy of the {@link Update}.
+     *
+     * @param channel channel to read
+     * @return future completed with {@link Result} and latest {@link Update} if found
+     */
+    CompletableFuture<Pair<Result,Update>> read(Channel channel) {
+        CompletableFuture<Pair<Result,Update>> future;
+        synchronized(this) {
+            String id = channel.id();
+            Query query = queries.get(id);
+            if(query == null || !query.isReusable()) {
+                // The first channel of the group keeps the validators of the previous responses
+                Group group = groups.get(id);
+                Channel reader = group != null && !group.members.isEmpty() ? group.members.values().iterator().next().channel : channel;
+                query = new Query(reader, reader.readAsync().handle((read, e) -> share(id, reader, read != null ? read : new Pair<>(Result.ERROR, null))));
+                // A query completed right away has not been seen by share
+                if(group != null || !query.future.isDone()) {
+                    queries.put(id, query);
+                }
+            }
+            future = query.future;
+        }
+        return future.thenApply(read -> new Pair<>(read.getKey(), read.getValue() != null ? read.getValue().copy() : null));
+    }
+
+    /**
+     * Give the update and validators read by a channel to the other channels of its group.
+     * Every updater stores the validators of the response, and any channel of the group
+     * can send the next conditional request.
+     * <p>
+     * The backoff of the group is updated once per query, before the updaters get the result.
+     * <p>
+     * The query of a channel without group, read by an updater which is not running, is not kept.
+     *
+     * @param id     channel id
+     * @param reader channel which sent the request
+     * @param read   result of the request
+     * @return read
+     */
+    private Pair<Result,Update> share(String id, Channel reader, Pair<Result,Update> read) {
+        List<Channel> channels = new ArrayList<>();
+        synchronized(this) {
+            Group group = groups.get(id);
+            if(group == null) {
+                Query query = queries.get(id);
+                if(query != null && query.reader == reader) {
+                    queries.remove(id);
+                }
+            }
+            else {
+                backoff(group, reader, read.getKey());
+                if(read.getKey() == Result.SUCCESS && read.getValue() != null) {
+                    group.members.values().forEach(member -> {
+                        if(member.channel != reader) channels.add(member.channel);
+                    });
+                }
+            }
+        }
+        if(channels.isEmpty()) {
+            return read;
+        }
+        Map<String, Validator> validators = reader.validators();
+        channels.forEach(channel -> channel.restore(read.getValue().copy(), validators));
+        return read;
+    }
+
+    /**
+     * Back off after a failed query, and wait at least until the host accepts requests again.
+     * The whole group retries together, from the shortest period of its updaters up to their longest maximum delay.
+     * A group without period is not retried.
+     *
+     * @param group  group of the channel
+     * @param reader channel which sent the request
+     * @param result result of the request
+     */
+    private void backoff(Group group, Channel reader, Result result) {
+        if(group.retry != null) {
+            group.retry.cancel(false);
+            group.retry = null;
+        }
+        group.retryAt = 0;
+        group.retryDelay = 0;
+
+        if(result != Result.ERROR && result != Result.RATE_LIMITED) {
+            group.backoff.success();
+            return;
+        }
+        if(group.period <= 0) {
+            return;
+        }
+
+        long cap = group.period;
+        for(Member member : group.members.values()) {
+            cap = Math.max(cap, member.maxBackoff);
+        }
+        long now = System.currentTimeMillis();
+        long delay = group.backoff.failure(group.period, cap);
+        if(result == Result.RATE_LIMITED) {
+            delay = Math.max(delay, reader.retryAt() - now);
+        }
+        group.retryDelay = delay;
+        group.retryAt = now + delay;
+        group.retry = Scheduler.schedule(() -> retry(group), delay);
+    }
+
+    /**
+     * Check a group at the end of its backoff.
+     */
+    private void retry(Group group) {
+        synchronized(this) {
+            if(groups.get(group.id) != group) {
+                return;
+            }
+            group.retry = null;
+            group.retryAt = 0;
+        }
+        check(group);
+    }
+
+    /**
+     * Schedule the checks of a group at the shortest period of its updaters.
+     */
+    private void schedule(Group group) {
+        long period = 0;
+        for(Member member : group.members.values()) {
+            if(member.period > 0 && (period == 0 || member.period < period)) {
+                period = member.period;
+            }
+        }
+        // A task cancelled by the shutdown of the scheduler is scheduled again
+        boolean live = group.task != null && !group.task.isDone();
+        if(period == group.period && live == (period > 0)) {
+            return;
+        }
+
+        if(group.task != null) {
+            group.task.cancel(false);
+            group.task = null;
+        }
+        group.period = period;
+        if(period > 0) {
+            group.task = Scheduler.schedule(() -> check(group), period, period);
+        }
+    }
+
+    /**
+     * Check every registered updater now, as their groups would on their next period.
+     *
+     * @return checks started
+     */
+    List<CompletableFuture<Result>> checkAll() {
+        List<Group> list;
+        synchronized(this) {
+            list = new ArrayList<>(groups.values());
+        }
+        List<CompletableFuture<Result>> checks = new ArrayList<>();
+        list.forEach(group -> checks.addAll(check(group)));
+        return checks;
+    }
+
+    /**
+     * Check every updater of a group, unless the group is waiting for its retry.
+     * The updaters are called outside of the lock, their checks share a single query.
+     * An updater failing to start its check does not prevent the others from checking.
+     *
+     * @return checks started
+     */
+    private List<CompletableFuture<Result>> check(Group group) {
+        List<Updater<?>> updaters;
+        synchronized(this) {
+            if(group.retryAt > System.currentTimeMillis()) {
+                return new ArrayList<>();
+            }
+            updaters = new ArrayList<>(group.members.keySet());
+        }
+        List<CompletableFuture<Result>> checks = new ArrayList<>(updaters.size());
+        for(Updater<?> updater : updaters) {
+            try {
+                checks.add(updater.findUpdate());
+            }
+            catch(RuntimeException e) {
+                logger.log(Level.WARNING, "Update check of " + group.id + " failed", e);
+            }
+        }
+        return checks;
+    }
+
+
+    /**
+     * Updaters reading the same channel.
+     */
+    private static class Group {
+
+        private final String id;
+        private final Map<Updater<?>, Member> members = new LinkedHashMap<>();
+        private final Backoff backoff = new Backoff();
+        private ScheduledFuture<?> task;
+        private long period;
+        private ScheduledFuture<?> retry;
+        private long retryAt;
+        private long retryDelay;
+
+        Group(String id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Registered updater.
+     */
+    private static class Member {
+
+        private final Channel channel;
+        private final long maxBackoff;
+        private long period;
+        private ScheduledFuture<?> first;
+
+        Member(Channel channel, long period, long maxBackoff) {
+            this.channel = channel;
+            this.period = period;
+            this.maxBackoff = maxBackoff;
+        }
+    }
+
+    /**
+     * Query of a channel.
+     */
+    private static class Query {
+
+        private final Channel reader;
+        private final CompletableFuture<Pair<Result,Update>> future;
+        private volatile long finished;
+
+        Query(Channel reader, CompletableFuture<Pair<Result,Update>> future) {
+            this.reader = reader;
+            this.future = future;
+            future.whenComplete((read, e) -> finished = System.currentTimeMillis());
+        }
+
+        /**
+         * A query in progress is reused, a done one only if it succeeded during the window.
+         * A query just done is not timed yet, and is reused.
+         */
+        boolean isReusable() {
+            if(!future.isDone()) {
+                return true;
+            }
+            if(future.isCompletedExceptionally() || future.join().getKey() != Result.SUCCESS) {
+                return false;
+            }
+            return finished == 0 || System.currentTimeMillis() - finished < window;
+        }
+    }
+}
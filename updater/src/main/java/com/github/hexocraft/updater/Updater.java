@@ -19,19 +19,23 @@ package com.github.hexocraft.updater;
 
 import com.github.hexocraft.updater.channels.Channel;
 import com.github.hexocraft.updater.enumeration.Result;
+import com.github.hexocraft.updater.utilities.Cadence;
+import com.github.hexocraft.updater.utilities.DownloadListener;
 import com.github.hexocraft.updater.utilities.Downloader;
+import com.github.hexocraft.updater.utilities.ResultCache;
+import com.github.hexocraft.updater.utilities.Scheduler;
+import com.github.hexocraft.updater.utilities.UpdaterMetrics;
 import javafx.util.Pair;
 
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Objects;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 
 @SuppressWarnings("unchecked")
-public class Updater<U extends Updater<?>> {
+public class Updater<U extends Updater<?>> implements AutoCloseable {
 
     /**
      * Current version.
@@ -65,6 +69,40 @@ public class Updater<U extends Updater<?>> {
      */
     private long period = TimeUnit.HOURS.toMillis(1);
 
+    /**
+     * Bounds of the period in adaptive mode.
+     * Disabled by default.
+     */
+    private long minPeriod = 0;
+    private long maxPeriod = 0;
+
+    /**
+     * Release cadence of the channel, used in adaptive mode.
+     */
+    private final Cadence cadence = new Cadence();
+
+    /**
+     * Maximum delay before trying again after a failed check.
+     * Default to 6 hours.
+     */
+    private long maxBackoff = TimeUnit.HOURS.toMillis(6);
+
+    /**
+     * Delay before the next check after failed checks, 0 after a successful check.
+     */
+    private volatile long retryDelay = 0;
+
+    /**
+     * Persistent cache of channel results.
+     * Disabled by default.
+     */
+    private ResultCache cache = null;
+
+    /**
+     * True once the channel has been restored from the cache.
+     */
+    private boolean restored = false;
+
     /**
      * onStart will be called at the beginning of the process.
      */
@@ -75,15 +113,30 @@ public class Updater<U extends Updater<?>> {
      */
     private BiConsumer<Result,Update> onFinish = null;
 
+    /**
+     * downloadListener will be notified of the download progress.
+     */
+    private DownloadListener downloadListener = null;
+
     /**
      * Query result.
      */
-    private Result result = Result.NO_UPDATE;
+    private volatile Result result = Result.NO_UPDATE;
 
     /**
      * <strong>Latest</strong> update if found.
      */
-    private Update update;
+    private volatile Update update;
+
+    /**
+     * Cause of the last download failure.
+     */
+    private volatile IOException error;
+
+    /**
+     * Check in progress, if any.
+     */
+    private CompletableFuture<Result> pending;
 
 
     public Updater(Version current, Channel channel) {
@@ -140,6 +193,58 @@ public class Updater<U extends Updater<?>> {
         return (U) this;
     }
 
+    /**
+     * Adapt the period to the release cadence of the channel.
+     * <p>
+     * The period is learned from the release dates and version changes seen by the updater:
+     * a project releasing daily is checked about every hour, a dormant one at the maximum period.
+     *
+     * @param minPeriod minimum period in milliseconds
+     * @param maxPeriod maximum period in milliseconds, 0 to disable the adaptive mode
+     * @return current instance
+     */
+    public U setAdaptivePeriod(long minPeriod, long maxPeriod) {
+        this.minPeriod = Math.min(minPeriod, maxPeriod);
+        this.maxPeriod = maxPeriod;
+        return (U) this;
+    }
+
+    /**
+     * @return period of the checks in milliseconds, learned from the release cadence in adaptive mode
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * Maximum delay before trying again after failed checks.
+     * <p>
+     * After a failed check, the next one is delayed by an exponential backoff with jitter,
+     * starting from the period. The updaters reading the same channel back off together,
+     * up to the longest maximum delay of the group. The delay is reset by the next successful check.
+     * A rate limited check also waits until the host accepts requests again, even beyond this delay.
+     *
+     * @param maxBackoff delay in milliseconds, never shorter than the period
+     * @return current instance
+     */
+    public U setMaxBackoff(long maxBackoff) {
+        this.maxBackoff = maxBackoff;
+        return (U) this;
+    }
+
+    /**
+     * Use a persistent cache of channel results.
+     * A result younger than the cache time to live is used without any network request.
+     * Channels without stable identity ({@link Channel#isStable()}) are not cached.
+     *
+     * @param cache {@link ResultCache} or null to disable cache
+     * @return current instance
+     */
+    public U setCache(ResultCache cache) {
+        this.cache = cache;
+        return (U) this;
+    }
+
     /**
      * @param onStart Consumer function which will be called at the beginning of the process
      * @return current instance
@@ -158,6 +263,15 @@ public class Updater<U extends Updater<?>> {
         return (U) this;
     }
 
+    /**
+     * @param downloadListener {@link DownloadListener} notified of the download progress
+     * @return current instance
+     */
+    public U onDownload(DownloadListener downloadListener) {
+        this.downloadListener = downloadListener;
+        return (U) this;
+    }
+
     public Result getResult() {
         return result;
     }
@@ -166,51 +280,151 @@ public class Updater<U extends Updater<?>> {
         return update;
     }
 
+    /**
+     * @return delay before the next check after failed checks in milliseconds, 0 after a successful check
+     */
+    public long getRetryDelay() {
+        return retryDelay;
+    }
+
+    /**
+     * @return cause of the last download failure, null if the last download succeeded
+     */
+    public IOException getError() {
+        return error;
+    }
+
     /**
      * Schedule updater
+     * <p>
+     * The updater is registered in the {@link UpdateManager}: updaters reading the same channel
+     * are checked together, with a single query. The returned instance is the handle
+     * used to cancel the checks with {@link #stop()}.
      *
      * @return current instance
      */
-    public U run() {
+    public synchronized U run() {
 
-        // Call the timer after the defined delay
-        if(delay > 0) {
-            Timer timer = new Timer();
-            timer.schedule(new TimerTask() {
-                public void run() {
-                    findUpdate();
-                }
-            }, delay);
-        }
+        // Start adaptive mode within its bounds
+        if(maxPeriod > 0)
+            period = Math.max(minPeriod, Math.min(maxPeriod, period));
 
-        // Call the timer task periodically
-        if(period > 0) {
-            Timer timer = new Timer();
-            timer.schedule(new TimerTask() {
-                public void run() {
-                    findUpdate();
-                }
-            }, period, period);
-        }
+        // Register the updater, replacing the previous schedule
+        UpdateManager.get().register(this, channel, delay, period, maxBackoff);
 
-        // No timer defined
+        // No delay defined
         if(delay == 0)
             findUpdate();
 
         return (U) this;
     }
 
-    private void findUpdate() {
+    /**
+     * @return true if the updater is scheduled
+     */
+    public boolean isRunning() {
+        return UpdateManager.get().isScheduled(this);
+    }
+
+    /**
+     * Cancel scheduled tasks.
+     * <p>
+     * Should be called when the plugin is disabled.
+     *
+     * @return current instance
+     */
+    public U stop() {
+        UpdateManager.get().unregister(this);
+        return (U) this;
+    }
+
+    /**
+     * Same as {@link #stop()}.
+     */
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * Find update using the defined channel.
+     * <p>
+     * Returns immediately, the check itself runs asynchronously.
+     * A new check is not started while the previous one is still running.
+     *
+     * @return future completed with the {@link Result} of the check
+     */
+    public synchronized CompletableFuture<Result> findUpdate() {
+
+        // Previous check still running
+        if(pending != null && !pending.isDone()) {
+            return pending;
+        }
 
         // Updater starting
         if(onStart != null) {
             onStart.run();
         }
+        long start = System.nanoTime();
+
+        // Use cached result if still valid
+        if(cache != null && channel.isStable()) {
+            ResultCache.Entry entry = cache.get(channel.id());
+            Update cached = entry != null ? entry.update() : null;
+            if(cached != null) {
+                if(cache.isFresh(entry)) {
+                    pending = measure(CompletableFuture.completedFuture(new Pair<>(Result.SUCCESS, cached)), start).thenApplyAsync(this::onRead, Scheduler.download());
+                    return pending;
+                }
+                if(!restored) {
+                    channel.restore(cached, entry.validators());
+                }
+            }
+            restored = true;
+        }
+
+        // Find update using defined channel, the update is downloaded out of the network executor
+        pending = measure(UpdateManager.get().read(channel).thenApply(this::store), start).thenApplyAsync(this::onRead, Scheduler.download());
+        return pending;
+    }
+
+    /**
+     * Report the check to {@link UpdaterMetrics} once the channel is read, before the update is downloaded
+     */
+    private CompletableFuture<Pair<Result,Update>> measure(CompletableFuture<Pair<Result,Update>> read, long start) {
+        String type = channel.getClass().getSimpleName();
+        return read.whenComplete((pair, e) -> UpdaterMetrics.get().onCheck(type, pair != null ? pair.getKey() : Result.ERROR, System.nanoTime() - start));
+    }
+
+    private Pair<Result,Update> store(Pair<Result,Update> read) {
+        if(cache != null && channel.isStable() && read.getKey() == Result.SUCCESS && read.getValue() != null) {
+            cache.put(channel.id(), read.getValue(), channel.validators());
+        }
+        return read;
+    }
+
+    /**
+     * Adjust the period to the release cadence of the channel
+     */
+    private synchronized void adapt(Update update) {
+        long now = System.currentTimeMillis();
+        cadence.observe(update.version(), update.released(), now);
+        long next = cadence.period(minPeriod, maxPeriod, now);
+        if(next != period) {
+            period = next;
+            UpdateManager.get().setPeriod(this, next);
+        }
+    }
 
-        // Find update using defined channel
-        Pair<Result,Update> read = channel.read();
-        result = read.getKey();
-        update = read.getValue();
+    private Result onRead(Pair<Result,Update> read) {
+        Result result = read.getKey();
+        Update update = read.getValue();
+        IOException error = null;
+
+        // Learn the release cadence
+        if(result == Result.SUCCESS && maxPeriod > 0) {
+            adapt(update);
+        }
 
         // On success
         if(result.equals(Result.SUCCESS)) {
@@ -224,19 +438,31 @@ public class Updater<U extends Updater<?>> {
             // Update found, trying to download it
             else if(output!= null && download) {
                 try {
-                    Downloader.download(update, output);
+                    if(!Downloader.download(update, output, downloadListener)) {
+                        result = Result.UPDATE_AVAILABLE;
+                    }
                 }
                 catch(IOException e) {
+                    error = e;
                     result = Result.UPDATE_AVAILABLE;
                 }
             }
         }
 
+        // Publish the check to the caller threads
+        this.update = update;
+        this.error = error;
+        this.result = result;
+
+        // The group of the updater backs off after a failed query
+        retryDelay = UpdateManager.get().retryDelay(this);
+
         // Updater ending
         if(onFinish != null) {
             onFinish.accept(result, update);
         }
 
+        return result;
     }
 
 }
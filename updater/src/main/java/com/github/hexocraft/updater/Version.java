@@ -19,13 +19,28 @@ package com.github.hexocraft.updater;
 
 import com.github.hexocraft.updater.enumeration.Release;
 
-import java.util.regex.Matcher;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.regex.Pattern;
 
 /**
  * Simple semver like major.minor.patch storage system.
+ * <p>
+ * Versions are ordered by semver precedence. Major, minor and patch are packed into a single long,
+ * so most comparisons are a single primitive compare.
  */
-public class Version {
+public class Version implements Comparable<Version> {
+
+    /**
+     * Number of bits of each packed number.
+     */
+    private static final int BITS = 21;
+
+    /**
+     * Interned versions.
+     */
+    private static final Map<Version, WeakReference<Version>> interned = new WeakHashMap<>();
 
     /**
      * major.
@@ -52,11 +67,19 @@ public class Version {
      */
     private final String build;
 
+    /**
+     * major.minor.patch packed in a long, -1 if a number does not fit in {@link #BITS} bits.
+     */
+    private final long packed;
+
     /**
      * Pattern used to match semantic versioning compliant strings.
      * <p>
      * Major: matcher.group(1) Minor: matcher.group(2) Patch: matcher.group(3)
+     *
+     * @deprecated {@link #parse(String)} no longer uses it, kept as the reference of the accepted grammar
      */
+    @Deprecated
     protected static Pattern semver = Pattern.compile("^(?:\\D*)(0|[1-9]\\d*)\\.(0|[1-9]\\d*)?(?:\\.(0|[1-9]\\d*))?(?:-((?:0|[1-9]\\d*|\\d*[a-zA-Z-][0-9a-zA-Z-]*)(?:\\.(?:0|[1-9]\\d*|\\d*[a-zA-Z-][0-9a-zA-Z-]*))*))?(?:\\+([0-9a-zA-Z-]+(?:\\.[0-9a-zA-Z-]+)*))?$", Pattern.CASE_INSENSITIVE);
 
     /**
@@ -74,6 +97,11 @@ public class Version {
         this.patch = patch;
         this.preRelease = preRelease;
         this.build = build;
+        this.packed = fits(major) && fits(minor) && fits(patch) ? ((long) major << (2 * BITS)) | ((long) minor << BITS) | patch : -1;
+    }
+
+    private static boolean fits(int value) {
+        return value >= 0 && value < (1 << BITS);
     }
 
     /**
@@ -88,25 +116,115 @@ public class Version {
     }
 
     /**
-     * Quick method for parsing update strings and matching them using the {@link
-     * Pattern} in {@link Version}
+     * Parse a semver string.
+     * <p>
+     * Anything before the first digit is ignored (ex: "Plugin v1.2.3"). The patch is optional.
+     * The string is read in a single pass, only the pre-release and build strings are allocated.
      *
      * @param version semver string to parse
      * @return {@link Version} if valid semver string else null
      */
     public static Version parse(String version) {
-        Matcher matcher = Version.semver.matcher(version);
+        int length = version.length();
+
+        // Skip prefix
+        int i = 0;
+        while(i < length && !isDigit(version.charAt(i))) i++;
+
+        // major.minor
+        int start = i;
+        i = number(version, i);
+        if(i < 0 || i >= length || version.charAt(i) != '.') return null;
+        int major = toInt(version, start, i);
+        start = ++i;
+        i = number(version, i);
+        if(i < 0) return null;
+        int minor = toInt(version, start, i);
+
+        // .patch
+        int patch = 0;
+        if(i < length && version.charAt(i) == '.') {
+            start = ++i;
+            i = number(version, i);
+            if(i < 0) return null;
+            patch = toInt(version, start, i);
+        }
+        if(major < 0 || minor < 0 || patch < 0) return null;
+
+        // -pre-release
+        String preRelease = null;
+        if(i < length && version.charAt(i) == '-') {
+            start = ++i;
+            i = identifiers(version, i, true);
+            if(i < 0) return null;
+            preRelease = version.substring(start, i);
+        }
+
+        // +build
+        String build = null;
+        if(i < length && version.charAt(i) == '+') {
+            start = ++i;
+            i = identifiers(version, i, false);
+            if(i < 0) return null;
+            build = version.substring(start, i);
+        }
+
+        return i == length ? new Version(major, minor, patch, preRelease, build) : null;
+    }
+
+    /**
+     * Read a number without leading zero
+     *
+     * @return end of the number, -1 if there is no valid number
+     */
+    private static int number(String version, int i) {
+        int length = version.length();
+        if(i >= length || !isDigit(version.charAt(i))) return -1;
+        if(version.charAt(i) == '0') return i + 1 < length && isDigit(version.charAt(i + 1)) ? -1 : i + 1;
+        while(i < length && isDigit(version.charAt(i))) i++;
+        return i;
+    }
+
+    /**
+     * Read dot separated identifiers made of [0-9A-Za-z-]
+     *
+     * @param numeric true if numeric identifiers cannot have leading zeros
+     * @return end of the identifiers, -1 if an identifier is empty or invalid
+     */
+    private static int identifiers(String version, int i, boolean numeric) {
+        int length = version.length();
+        while(true) {
+            int start = i;
+            boolean digits = true;
+            while(i < length && isIdentifier(version.charAt(i))) {
+                digits &= isDigit(version.charAt(i));
+                i++;
+            }
+            if(i == start) return -1;
+            if(numeric && digits && i - start > 1 && version.charAt(start) == '0') return -1;
+            if(i >= length || version.charAt(i) != '.') return i;
+            i++;
+        }
+    }
 
-        if(matcher.matches() && matcher.groupCount() >= 2) {
-            int major = Integer.parseInt(matcher.group(1));
-            int minor = Integer.parseInt(matcher.group(2));
-            int patch = matcher.group(3) != null ? Integer.parseInt(matcher.group(3)) : 0;
-            String preRelease = matcher.group(4);
-            String build = matcher.group(5);
-            return new Version(major, minor, patch, preRelease, build);
+    /**
+     * @return value of the digits, -1 on overflow
+     */
+    private static int toInt(String version, int start, int end) {
+        long value = 0;
+        for(int i = start; i < end; i++) {
+            value = value * 10 + (version.charAt(i) - '0');
+            if(value > Integer.MAX_VALUE) return -1;
         }
+        return (int) value;
+    }
 
-        return null;
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentifier(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '-';
     }
 
     /**
@@ -176,42 +294,180 @@ public class Version {
 
     /**
      * Check if this version is equal to the input version.
+     * <p>
+     * Same as {@link #equals(Object)}: major, minor, patch, pre-release and build are compared.
      *
      * @param version input {@link Version} object
-     * @return true if the update is greater than ours
+     * @return true if both versions are equal
      */
     public boolean equals(Version version) {
-        if(version.getMajor() != this.getMajor())
-            return false;
-        if(version.getMinor() != this.getMinor())
-            return false;
-        return version.getPatch() == this.getPatch();
+        return equals((Object) version);
     }
 
     /**
      * Check if this version is lower than the input version.
+     * <p>
+     * The pre-release is taken into account, the build is not.
      *
      * @param version input {@link Version} object
      * @return true if the update is greater than ours
      */
     public boolean isLower(Version version) {
-        int result = version.getMajor() - this.getMajor();
-        if(result == 0) {
-            result = version.getMinor() - this.getMinor();
-            if(result == 0) {
-                result = version.getPatch() - this.getPatch();
-            }
-        }
-        return result > 0;
+        return precedence(version) < 0;
     }
 
     /**
      * Check if this version is greater than the input version.
+     * <p>
+     * The pre-release is taken into account, the build is not.
      *
      * @param version input {@link Version} object
      * @return true if the update is lower than ours
      */
     public boolean isGreater(Version version) {
-        return version.isLower(this);
+        return precedence(version) > 0;
+    }
+
+    /**
+     * Compare versions by semver precedence.
+     * <p>
+     * Versions of same precedence are ordered by build, so the order is consistent with {@link #equals(Object)}.
+     *
+     * @param version input {@link Version} object
+     * @return a negative number, zero or a positive number if this version is lower, equal or greater
+     */
+    @Override
+    public int compareTo(Version version) {
+        int result = precedence(version);
+        if(result != 0) {
+            return result;
+        }
+        String build = this.build != null ? this.build : "";
+        return build.compareTo(version.build != null ? version.build : "");
+    }
+
+    /**
+     * Semver precedence: major, minor, patch, then pre-release.
+     * A version without pre-release is greater than the same version with a pre-release.
+     */
+    private int precedence(Version version) {
+        int result;
+        if(packed >= 0 && version.packed >= 0) {
+            result = Long.compare(packed, version.packed);
+        }
+        else {
+            result = Integer.compare(major, version.major);
+            if(result == 0) result = Integer.compare(minor, version.minor);
+            if(result == 0) result = Integer.compare(patch, version.patch);
+        }
+        return result != 0 ? result : comparePreRelease(preRelease, version.preRelease);
+    }
+
+    /**
+     * Compare dot separated pre-release identifiers, without splitting them.
+     */
+    private static int comparePreRelease(String a, String b) {
+        boolean hasA = a != null && !a.isEmpty();
+        boolean hasB = b != null && !b.isEmpty();
+        if(!hasA || !hasB) {
+            return Boolean.compare(!hasA, !hasB);
+        }
+
+        int i = 0;
+        int j = 0;
+        while(true) {
+            int endA = a.indexOf('.', i);
+            int endB = b.indexOf('.', j);
+            if(endA < 0) endA = a.length();
+            if(endB < 0) endB = b.length();
+
+            int result = compareIdentifier(a, i, endA, b, j, endB);
+            if(result != 0) {
+                return result;
+            }
+
+            // A larger set of identifiers has a higher precedence
+            boolean moreA = endA < a.length();
+            boolean moreB = endB < b.length();
+            if(!moreA || !moreB) {
+                return Boolean.compare(moreA, moreB);
+            }
+            i = endA + 1;
+            j = endB + 1;
+        }
+    }
+
+    /**
+     * Numeric identifiers are compared numerically and are lower than alphanumeric identifiers,
+     * which are compared in ASCII order.
+     */
+    private static int compareIdentifier(String a, int startA, int endA, String b, int startB, int endB) {
+        boolean numericA = isNumeric(a, startA, endA);
+        boolean numericB = isNumeric(b, startB, endB);
+        if(numericA != numericB) {
+            return numericA ? -1 : 1;
+        }
+        int lengthA = endA - startA;
+        int lengthB = endB - startB;
+        if(numericA && lengthA != lengthB) {
+            return Integer.compare(lengthA, lengthB);
+        }
+        for(int k = 0; k < lengthA && k < lengthB; k++) {
+            int result = Character.compare(a.charAt(startA + k), b.charAt(startB + k));
+            if(result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(lengthA, lengthB);
+    }
+
+    private static boolean isNumeric(String value, int start, int end) {
+        if(start == end) {
+            return false;
+        }
+        for(int i = start; i < end; i++) {
+            if(!isDigit(value.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Versions are equal if they have the same major, minor, patch, pre-release and build.
+     */
+    @Override
+    public boolean equals(Object object) {
+        if(this == object) {
+            return true;
+        }
+        if(!(object instanceof Version)) {
+            return false;
+        }
+        return compareTo((Version) object) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = Long.hashCode(packed >= 0 ? packed : ((long) major * 31 + minor) * 31 + patch);
+        hash = hash * 31 + (preRelease != null && !preRelease.isEmpty() ? preRelease.hashCode() : 0);
+        return hash * 31 + (build != null && !build.isEmpty() ? build.hashCode() : 0);
+    }
+
+    /**
+     * Get the canonical instance of this version.
+     * <p>
+     * Interned versions are released once no longer used.
+     *
+     * @return an equal {@link Version}, the same instance for every equal version
+     */
+    public Version intern() {
+        synchronized(interned) {
+            WeakReference<Version> reference = interned.get(this);
+            Version version = reference != null ? reference.get() : null;
+            if(version == null) {
+                interned.put(this, new WeakReference<>(this));
+                version = this;
+            }
+            return version;
+        }
     }
 }
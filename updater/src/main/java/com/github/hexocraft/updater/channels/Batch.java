@@ -0,0 +1,170 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.channels;
+
+import com.github.hexocraft.updater.Update;
+import com.github.hexocraft.updater.enumeration.Result;
+import com.github.hexocraft.updater.utilities.RateLimitedException;
+import javafx.util.Pair;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group of projects resolved with a single request.
+ * <p>
+ * The result of the last request is shared by every channel of the batch while it is in progress,
+ * and during the batch window if it covered the project.
+ */
+abstract class Batch {
+
+    /**
+     * Time during which a batch result is shared by the channels of the batch.
+     */
+    static long window = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Registered projects and their number of channels, sorted so the same set always produces the same request.
+     */
+    private final Map<String, Integer> projects = new TreeMap<>();
+
+    /**
+     * Projects queried by the last request.
+     */
+    private Set<String> queried = new TreeSet<>();
+
+    /**
+     * Last request.
+     */
+    private CompletableFuture<Map<String, Pair<Result,Update>>> pending;
+
+    /**
+     * Start time of the last request.
+     */
+    private long timestamp;
+
+    /**
+     * Time from which the host accepts requests again, after a rate limited request.
+     */
+    private volatile long retryAt;
+
+
+    synchronized void register(String project) {
+        projects.merge(project, 1, Integer::sum);
+    }
+
+    /**
+     * The project is removed once every channel of the project is unregistered.
+     */
+    synchronized void unregister(String project) {
+        projects.computeIfPresent(project, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * @return number of registered projects
+     */
+    synchronized int size() {
+        return projects.size();
+    }
+
+    /**
+     * Get the latest update of a project.
+     * <p>
+     * A new request is sent for every registered project if the last one cannot be shared.
+     * Blocks the calling thread until the request is finished.
+     *
+     * @param project project to resolve
+     * @return {@link Result} and a copy of the latest {@link Update}
+     */
+    Pair<Result,Update> resolve(String project) {
+        CompletableFuture<Map<String, Pair<Result,Update>>> request;
+        Set<String> query = null;
+        synchronized(this) {
+            boolean recent = System.currentTimeMillis() - timestamp < window;
+            if(pending != null && queried.contains(project) && (!pending.isDone() || recent)) {
+                request = pending;
+            }
+            else {
+                queried = new TreeSet<>(projects.keySet());
+                queried.add(project);
+                timestamp = System.currentTimeMillis();
+                query = queried;
+                request = pending = new CompletableFuture<>();
+            }
+        }
+
+        // The calling thread sends the request, or waits for the caller sending it
+        if(query != null) {
+            Map<String, Pair<Result,Update>> read = null;
+            try {
+                read = read(query);
+            }
+            finally {
+                request.complete(read);
+            }
+        }
+
+        Map<String, Pair<Result,Update>> updates = request.join();
+        if(updates == null) {
+            return new Pair<>(Result.ERROR, null);
+        }
+        Pair<Result,Update> read = updates.get(project);
+        if(read == null) {
+            return new Pair<>(Result.REPO_NO_RELEASES, null);
+        }
+        // Each updater gets its own copy
+        Update update = read.getValue();
+        return new Pair<>(read.getKey(), update == null ? null : update.copy());
+    }
+
+    /**
+     * Send one request for the given projects.
+     *
+     * @param projects projects to query
+     * @return {@link Result} and latest {@link Update} by project, or null on error
+     */
+    protected abstract Map<String, Pair<Result,Update>> read(Set<String> projects);
+
+    /**
+     * @return time from which the host accepts requests again in epoch milliseconds, 0 if unknown
+     */
+    long retryAt() {
+        return retryAt;
+    }
+
+    /**
+     * Result of a request refused by the host, or deferred until its request budget allows it
+     *
+     * @param projects queried projects
+     * @param e        cause, with the time from which the host accepts requests again
+     * @return {@link Result#RATE_LIMITED} for every project
+     */
+    Map<String, Pair<Result,Update>> limited(Set<String> projects, RateLimitedException e) {
+        retryAt = e.retryAt();
+        Map<String, Pair<Result,Update>> updates = new HashMap<>();
+        for(String project : projects) {
+            updates.put(project, new Pair<>(Result.RATE_LIMITED, null));
+        }
+        return updates;
+    }
+}
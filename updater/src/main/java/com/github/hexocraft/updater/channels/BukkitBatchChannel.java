@@ -0,0 +1,188 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.channels;
+
+import com.github.hexocraft.updater.Update;
+import com.github.hexocraft.updater.enumeration.Result;
+import com.github.hexocraft.updater.utilities.HttpConnection;
+import com.github.hexocraft.updater.utilities.RateLimitedException;
+import com.github.hexocraft.updater.utilities.Validator;
+import javafx.util.Pair;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bukkit channel resolving every registered project with a single request.
+ * <p>
+ * The servermods API accepts a comma separated list of project ids.
+ * Every {@link BukkitBatchChannel} sharing the same API key is registered in the same batch,
+ * and a single request is sent for the whole batch per poll.
+ */
+public class BukkitBatchChannel implements Channel {
+
+    /**
+     * Batches, by API key.
+     */
+    static final Map<String, BukkitBatch> batches = new ConcurrentHashMap<>();
+
+    /**
+     * Ressource ID.
+     */
+    private final String projectId;
+
+    /**
+     * Batch this channel is registered in.
+     */
+    private final BukkitBatch batch;
+
+    /**
+     * True while the project is registered in the batch.
+     */
+    private boolean registered;
+
+
+    public BukkitBatchChannel(String projectId) {
+        this(null, projectId);
+    }
+
+    public BukkitBatchChannel(String apiKey, String projectId) {
+        this.projectId = projectId;
+        this.batch = batches.computeIfAbsent(apiKey != null ? apiKey : "", key -> new BukkitBatch(apiKey));
+    }
+
+    /**
+     * Add this project to its batch, done when an updater of the channel is registered.
+     */
+    @Override
+    public synchronized void register() {
+        if(!registered) {
+            batch.register(projectId);
+            registered = true;
+        }
+    }
+
+    /**
+     * Remove this project from its batch.
+     * Done when the last updater of the channel is stopped.
+     */
+    @Override
+    public synchronized void unregister() {
+        if(registered) {
+            batch.unregister(projectId);
+            registered = false;
+        }
+    }
+
+    @Override
+    public String id() {
+        return "bukkit:" + BukkitChannel.host + BukkitChannel.query.replace("{{ PROJECT_ID }}", projectId) + Channel.credentials(batch.apiKey);
+    }
+
+    @Override
+    public Pair<Result,Update> read() {
+        return batch.resolve(projectId);
+    }
+
+    @Override
+    public long retryAt() {
+        return batch.retryAt();
+    }
+
+
+    /**
+     * Projects sharing the same API key.
+     */
+    static class BukkitBatch extends Batch {
+
+        /**
+         * API Key.
+         */
+        private final String apiKey;
+
+        /**
+         * Validators of the last response, and the url they belong to.
+         */
+        private String lastUrl;
+        private Validator validator;
+        private Map<String, Pair<Result,Update>> latest;
+
+
+        BukkitBatch(String apiKey) {
+            this.apiKey = apiKey;
+        }
+
+        @Override
+        protected Map<String, Pair<Result,Update>> read(Set<String> projects) {
+            HttpURLConnection connection = null;
+            try {
+                URL url = new URL((BukkitChannel.host + BukkitChannel.query).replace("{{ PROJECT_ID }}", String.join(",", projects)));
+                Validator conditional = null;
+                Map<String, Pair<Result,Update>> previous = null;
+                synchronized(this) {
+                    if(url.toString().equals(lastUrl) && latest != null && validator != null) {
+                        conditional = validator;
+                        previous = latest;
+                    }
+                }
+
+                connection = HttpConnection.Connection(url);
+                if(apiKey != null) connection.addRequestProperty("X-API-Key", apiKey);
+                if(conditional != null) conditional.apply(connection);
+                connection = HttpConnection.Open(connection);
+                int status = connection.getResponseCode();
+
+                // The files did not change since last request
+                if(status == HttpURLConnection.HTTP_NOT_MODIFIED && previous != null) {
+                    return previous;
+                }
+
+                // The files are present in the repository
+                if(status >= 200 && status < 300) {
+                    Map<String, Pair<Result,Update>> updates;
+                    try(Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+                        updates = BukkitChannel.parseProjects(reader);
+                    }
+                    synchronized(this) {
+                        lastUrl = url.toString();
+                        validator = Validator.of(connection);
+                        latest = updates;
+                    }
+                    return updates;
+                }
+
+                return null;
+            }
+            catch(RateLimitedException e) {
+                return limited(projects, e);
+            }
+            catch(Exception e) {
+                return null;
+            }
+            finally {
+                HttpConnection.close(connection);
+            }
+        }
+    }
+}
@@ -20,19 +20,24 @@ package com.github.hexocraft.updater.channels;
 import com.github.hexocraft.updater.Update;
 import com.github.hexocraft.updater.Version;
 import com.github.hexocraft.updater.enumeration.Release;
+import com.github.hexocraft.updater.enumeration.Resolution;
 import com.github.hexocraft.updater.enumeration.Result;
 import com.github.hexocraft.updater.utilities.HttpConnection;
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.github.hexocraft.updater.utilities.Json;
+import com.github.hexocraft.updater.utilities.RateLimitedException;
+import com.github.hexocraft.updater.utilities.Validator;
+import com.google.gson.stream.JsonReader;
 import javafx.util.Pair;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.util.stream.Collectors;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 public class BukkitChannel implements Channel {
 
@@ -61,6 +66,36 @@ public class BukkitChannel implements Channel {
      */
     private String projectId;
 
+    /**
+     * Request headers.
+     */
+    private Map<String, String> headers;
+
+    /**
+     * How the latest file is resolved.
+     */
+    private Resolution resolution = Resolution.LATEST;
+
+    /**
+     * Accept alpha and beta files, as {@link BukkitBatchChannel} does.
+     */
+    private boolean preReleases = true;
+
+    /**
+     * Validators of the last response.
+     */
+    private Validator validator;
+
+    /**
+     * Last parsed result, returned when the releases did not change.
+     */
+    private Pair<Result,Update> latest;
+
+    /**
+     * Time from which the host accepts requests again, after a rate limited read.
+     */
+    private volatile long retryAt;
+
 
     public BukkitChannel(String projectId) {
         this(null, projectId);
@@ -69,6 +104,7 @@ public class BukkitChannel implements Channel {
     public BukkitChannel(String apiKey, String projectId) {
         try {
             this.apiKey = apiKey;
+            this.headers = apiKey != null ? Collections.singletonMap("X-API-Key", apiKey) : Collections.emptyMap();
             this.projectId = projectId;
             this.url = new URL((host + query).replace("{{ PROJECT_ID }}", this.projectId));
         }
@@ -76,51 +112,288 @@ public class BukkitChannel implements Channel {
         }
     }
 
+    /**
+     * Define how the latest file is resolved.
+     * Default to {@link Resolution#LATEST}, the last uploaded file.
+     *
+     * @param resolution {@link Resolution}
+     * @return current instance
+     */
+    public synchronized BukkitChannel setResolution(Resolution resolution) {
+        this.resolution = resolution;
+        this.latest = null;
+        return this;
+    }
+
+    /**
+     * Accept alpha and beta files, returned with a pre-release version.
+     * Enabled by default.
+     *
+     * @param preReleases true to accept pre-releases
+     * @return current instance
+     */
+    public synchronized BukkitChannel setPreReleases(boolean preReleases) {
+        this.preReleases = preReleases;
+        this.latest = null;
+        return this;
+    }
+
+    /**
+     * @return resolution and filters, part of the identity of the channel
+     */
+    private String variant() {
+        return resolution.name().toLowerCase() + (preReleases ? "+pre-releases" : "");
+    }
+
+    @Override
+    public String id() {
+        return "bukkit:" + url + Channel.credentials(apiKey) + " " + variant();
+    }
+
+    @Override
+    public synchronized Map<String, Validator> validators() {
+        return validator != null ? Collections.singletonMap(url.toString(), validator) : Collections.emptyMap();
+    }
+
+    @Override
+    public synchronized void restore(Update update, Map<String, Validator> validators) {
+        if(latest == null && update != null) {
+            latest = new Pair<>(Result.SUCCESS, update);
+            validator = validators.get(url.toString());
+        }
+    }
+
+    @Override
+    public long retryAt() {
+        return retryAt;
+    }
+
+    /**
+     * Find the latest update.
+     * <p>
+     * The request is shared with the channels of the same project reading at the same moment.
+     *
+     * @return {@link Result} and latest {@link Update} if found
+     */
     @Override
     public Pair<Result,Update> read() {
+        return Flights.update(url, headers, variant(), this::request);
+    }
+
+    private synchronized Pair<Result,Update> request() {
+        HttpURLConnection connection = null;
         try {
-            HttpURLConnection connection = HttpConnection.Connection(url);
-            if(apiKey != null) connection.addRequestProperty("X-API-Key", apiKey);
+            connection = HttpConnection.Connection(url);
+            headers.forEach(connection::addRequestProperty);
+            if(latest != null && validator != null) validator.apply(connection);
             connection = HttpConnection.Open(connection);
             int status = connection.getResponseCode();
 
+            // The releases did not change since last request
+            if(status == HttpURLConnection.HTTP_NOT_MODIFIED && latest != null) {
+                return latest;
+            }
+
             // The file is present in the repository
-            if((status >= 200 && status < 300) || status == 304) {
+            if(status >= 200 && status < 300) {
+                validator = Validator.of(connection);
+                latest = null;
 
                 // Read response
-                String response = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)).lines().collect(Collectors.joining(System.lineSeparator()));
+                try(Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+                    Pair<Result,Update> read = parse(reader, resolution, preReleases);
+                    if(read.getKey() != Result.ERROR) latest = read;
+                    return read;
+                }
+            }
 
-                // Convert to json
-                JsonArray releases = new Gson().fromJson(response, JsonArray.class);
+            return new Pair<>(Result.ERROR, null);
+        }
+        catch(RateLimitedException e) {
+            retryAt = e.retryAt();
+            return new Pair<>(Result.RATE_LIMITED, null);
+        }
+        catch(Exception e) {
+            return new Pair<>(Result.ERROR, null);
+        }
+        finally {
+            HttpConnection.close(connection);
+        }
+    }
 
-                // No release found
-                if(response.isEmpty() || releases.size() == 0) {
-                    return new Pair<>(Result.REPO_NO_RELEASES, null);
-                }
+    /**
+     * Read the latest file from the files response.
+     * <p>
+     * The response is read token by token, only the fields of the latest file are kept.
+     *
+     * @param reader files response
+     * @return {@link Result} and latest {@link Update} if found
+     * @throws IOException if the response cannot be read
+     */
+    static Pair<Result,Update> parse(Reader reader) throws IOException {
+        return parse(reader, Resolution.LATEST, true);
+    }
 
-                // Get the latest release
-                JsonObject release = releases.get(releases.size() - 1).getAsJsonObject();
-                String name = release.get("name").getAsString();
-                String downloadUrl = release.get("downloadUrl").getAsString();
-                String fileName = release.get("fileName").getAsString();
-                Release type = release.get("releaseType").getAsString().equals("release") ? Release.RELEASE : Release.PRE_RELEASE;
+    /**
+     * Resolve the latest file from the files response.
+     * <p>
+     * The response is read token by token, only the fields of the selected file are kept.
+     * Files are listed in upload order: the latest file is the last one.
+     *
+     * @param reader      files response
+     * @param resolution  how the latest file is resolved
+     * @param preReleases true to accept alpha and beta files
+     * @return {@link Result} and latest {@link Update} if found
+     * @throws IOException if the response cannot be read
+     */
+    static Pair<Result,Update> parse(Reader reader, Resolution resolution, boolean preReleases) throws IOException {
+        JsonReader json = new JsonReader(reader);
 
-                // Get version from release name
-                Version version = Version.parse(fileName.replaceFirst("[.][^.]+$", "") + (type == Release.PRE_RELEASE ? "-pre-release" : ""));
+        // No release found
+        if(Json.isEmpty(json)) {
+            return new Pair<>(Result.REPO_NO_RELEASES, null);
+        }
 
-                // Create new update
-                if(version != null) {
-                    Update update = new Update(name, version, new URL(downloadUrl));
-                    return new Pair<>(Result.SUCCESS, update);
-                }
+        String[] selected = null;
+        Version highest = null;
+        json.beginArray();
+        while(json.hasNext()) {
+            String[] file = parseFile(json);
+            if(!preReleases && !"release".equals(file[3])) {
+                continue;
+            }
+            if(resolution != Resolution.HIGHEST) {
+                selected = file;
+                continue;
+            }
+            Version version = file[2] != null ? version(file[2], file[3]) : null;
+            if(version != null && (highest == null || version.compareTo(highest) > 0)) {
+                highest = version;
+                selected = file;
+            }
+        }
+        json.endArray();
+
+        // No release found
+        if(selected == null) {
+            return new Pair<>(Result.REPO_NO_RELEASES, null);
+        }
+        return toUpdate(selected[0], selected[1], selected[2], selected[3], selected[4]);
+    }
 
-                return new Pair<>(Result.ERROR, null);
+    /**
+     * Read the latest file of each project from a files response covering several projects.
+     * <p>
+     * The response is read token by token, only the fields of the latest file of each project are kept.
+     *
+     * @param reader files response
+     * @return {@link Result} and latest {@link Update} by project id
+     * @throws IOException if the response cannot be read
+     */
+    static Map<String, Pair<Result,Update>> parseProjects(Reader reader) throws IOException {
+        Map<String, String[]> files = new HashMap<>();
+        JsonReader json = new JsonReader(reader);
+
+        // No release found
+        if(Json.isEmpty(json)) {
+            return new HashMap<>();
+        }
+
+        // The latest release of a project is the last one
+        json.beginArray();
+        while(json.hasNext()) {
+            String[] file = parseFile(json);
+            if(file[5] != null) files.put(file[5], file);
+        }
+        json.endArray();
+
+        // Create updates
+        Map<String, Pair<Result,Update>> updates = new HashMap<>();
+        for(Map.Entry<String, String[]> file : files.entrySet()) {
+            String[] values = file.getValue();
+            updates.put(file.getKey(), toUpdate(values[0], values[1], values[2], values[3], values[4]));
+        }
+        return updates;
+    }
+
+    /**
+     * Read the fields of a file object.
+     *
+     * @param json {@link JsonReader} positioned on the file
+     * @return name, download url, file name, release type, md5 and project id
+     * @throws IOException if the file cannot be read
+     */
+    private static String[] parseFile(JsonReader json) throws IOException {
+        String[] file = new String[6];
+        json.beginObject();
+        while(json.hasNext()) {
+            switch(json.nextName()) {
+                case "name":
+                    file[0] = Json.nextString(json);
+                    break;
+                case "downloadUrl":
+                    file[1] = Json.nextString(json);
+                    break;
+                case "fileName":
+                    file[2] = Json.nextString(json);
+                    break;
+                case "releaseType":
+                    file[3] = Json.nextString(json);
+                    break;
+                case "md5":
+                    file[4] = Json.nextString(json);
+                    break;
+                case "projectId":
+                    file[5] = Json.nextString(json);
+                    break;
+                default:
+                    json.skipValue();
             }
+        }
+        json.endObject();
+        return file;
+    }
+
+    /**
+     * Get the version from a file name
+     *
+     * @param fileName    file name, holding the version
+     * @param releaseType release, beta or alpha
+     * @return {@link Version}, or null if the file name does not hold a version
+     */
+    static Version version(String fileName, String releaseType) {
+        Release type = "release".equals(releaseType) ? Release.RELEASE : Release.PRE_RELEASE;
+        int extension = fileName.lastIndexOf('.');
+        String baseName = extension >= 0 && extension < fileName.length() - 1 ? fileName.substring(0, extension) : fileName;
+        return Version.parse(type == Release.PRE_RELEASE ? baseName + "-pre-release" : baseName);
+    }
 
+    /**
+     * Create an update from the fields of a file
+     *
+     * @param name        file title
+     * @param downloadUrl file download url
+     * @param fileName    file name, holding the version
+     * @param releaseType release, beta or alpha
+     * @param md5         md5 of the file
+     * @return {@link Result} and {@link Update}
+     * @throws IOException if the download url is malformed
+     */
+    static Pair<Result,Update> toUpdate(String name, String downloadUrl, String fileName, String releaseType, String md5) throws IOException {
+        if(downloadUrl == null || fileName == null) {
             return new Pair<>(Result.ERROR, null);
         }
-        catch(Exception e) {
-            return new Pair<>(Result.ERROR, null);
+
+        // Get version from release name
+        Version version = version(fileName, releaseType);
+
+        // Create new update
+        if(version != null) {
+            Update update = new Update(name, version, new URL(downloadUrl));
+            if(md5 != null && !md5.isEmpty()) update.setDigest("md5:" + md5);
+            return new Pair<>(Result.SUCCESS, update);
         }
+
+        return new Pair<>(Result.ERROR, null);
     }
 }
@@ -19,11 +19,116 @@ package com.github.hexocraft.updater.channels;
 
 import com.github.hexocraft.updater.Update;
 import com.github.hexocraft.updater.enumeration.Result;
+import com.github.hexocraft.updater.utilities.Scheduler;
+import com.github.hexocraft.updater.utilities.Validator;
 import javafx.util.Pair;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Represent a channel where an update can be found
  */
 public interface Channel {
+
+    /**
+     * Find the latest update.
+     * <p>
+     * Blocks the calling thread until the request is finished.
+     *
+     * @return {@link Result} and latest {@link Update} if found
+     */
     Pair<Result, Update> read();
+
+    /**
+     * Find the latest update without blocking the calling thread.
+     * <p>
+     * The request runs on the shared network executor of the {@link Scheduler}.
+     *
+     * @return future completed with {@link Result} and latest {@link Update} if found
+     */
+    default CompletableFuture<Pair<Result, Update>> readAsync() {
+        return CompletableFuture.supplyAsync(this::read, Scheduler.io())
+                .exceptionally(e -> new Pair<>(Result.ERROR, null));
+    }
+
+    /**
+     * Identity of the channel, made of its type, queried url and credentials.
+     * <p>
+     * Used as key to cache results and to share queries between updaters.
+     * The default identity is the instance itself: it is not shared, and not stable across restarts
+     * so results are not persisted.
+     *
+     * @return channel identity
+     */
+    default String id() {
+        return instance(this);
+    }
+
+    /**
+     * @return true if the identity of the channel is the same across restarts
+     */
+    default boolean isStable() {
+        return !id().equals(instance(this));
+    }
+
+    /**
+     * @return validators of the last responses, by url
+     */
+    default Map<String, Validator> validators() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Called when an updater using this channel is registered.
+     */
+    default void register() {
+    }
+
+    /**
+     * Called when the last updater using this channel is unregistered,
+     * the channel releases what it registered.
+     */
+    default void unregister() {
+    }
+
+    /**
+     * Time from which the host accepts requests again, after a {@link Result#RATE_LIMITED} read.
+     *
+     * @return time in epoch milliseconds, 0 if unknown
+     */
+    default long retryAt() {
+        return 0;
+    }
+
+    /**
+     * Restore a previously read update and its validators,
+     * so the next request can be a conditional one.
+     *
+     * @param update     previously read {@link Update}
+     * @param validators validators of the responses, by url
+     */
+    default void restore(Update update, Map<String, Validator> validators) {
+    }
+
+    /**
+     * Identity of a channel instance, not shared by any other channel.
+     *
+     * @param channel channel instance
+     * @return instance identity
+     */
+    static String instance(Channel channel) {
+        return channel.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(channel));
+    }
+
+    /**
+     * Part of the identity standing for credentials, without revealing them.
+     *
+     * @param secret api key or token, may be null
+     * @return "#" followed by a hash of the secret, or an empty string without secret
+     */
+    static String credentials(String secret) {
+        return secret != null && !secret.isEmpty() ? "#" + Integer.toHexString(secret.hashCode()) : "";
+    }
 }
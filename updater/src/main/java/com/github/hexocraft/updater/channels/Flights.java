@@ -0,0 +1,87 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.channels;
+
+import com.github.hexocraft.updater.Update;
+import com.github.hexocraft.updater.enumeration.Result;
+import com.github.hexocraft.updater.utilities.SingleFlight;
+import javafx.util.Pair;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Requests of the channels, shared between the channels querying the same url with the same headers.
+ * <p>
+ * Updaters are started together when the server starts, so they usually query their sources at the same moment.
+ */
+final class Flights {
+
+    /**
+     * Shared requests, failed ones are not reused.
+     */
+    static final SingleFlight requests = new SingleFlight(TimeUnit.SECONDS.toMillis(5));
+
+
+    /**
+     * This class cannot be instantiate.
+     * Use static functions below.
+     */
+    private Flights() {
+    }
+
+    /**
+     * Run a request returning a value that cannot be modified
+     *
+     * @param url        requested url
+     * @param headers    request headers, which may change the response
+     * @param resolution how the result is resolved from the response, null if there is a single way
+     * @param request    request to run
+     * @return {@link Result} and value of the request
+     */
+    static <T> Pair<Result,T> read(URL url, Map<String, String> headers, String resolution, Supplier<Pair<Result,T>> request) {
+        if(url == null) return request.get();
+        String key = SingleFlight.key(url, headers) + (resolution != null ? " " + resolution : "");
+        return requests.call(key, request, read -> read.getKey() != Result.ERROR);
+    }
+
+    static <T> Pair<Result,T> read(URL url, Supplier<Pair<Result,T>> request) {
+        return read(url, Collections.emptyMap(), null, request);
+    }
+
+    /**
+     * Run a request returning an {@link Update}, each caller gets its own copy
+     *
+     * @param url        requested url
+     * @param headers    request headers, which may change the response
+     * @param resolution how the result is resolved from the response, null if there is a single way
+     * @param request    request to run
+     * @return {@link Result} and {@link Update} of the request
+     */
+    static Pair<Result,Update> update(URL url, Map<String, String> headers, String resolution, Supplier<Pair<Result,Update>> request) {
+        Pair<Result,Update> read = read(url, headers, resolution, request);
+        return read.getValue() != null ? new Pair<>(read.getKey(), read.getValue().copy()) : read;
+    }
+
+    static Pair<Result,Update> update(URL url, Supplier<Pair<Result,Update>> request) {
+        return update(url, Collections.emptyMap(), null, request);
+    }
+}
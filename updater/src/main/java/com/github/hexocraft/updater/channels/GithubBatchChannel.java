@@ -0,0 +1,410 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.channels;
+
+import com.github.hexocraft.updater.Update;
+import com.github.hexocraft.updater.Version;
+import com.github.hexocraft.updater.enumeration.Result;
+import com.github.hexocraft.updater.utilities.HttpConnection;
+import com.github.hexocraft.updater.utilities.Json;
+import com.github.hexocraft.updater.utilities.RateLimitedException;
+import com.github.hexocraft.updater.utilities.Validator;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import javafx.util.Pair;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GitHub channel resolving every registered repository with a single GraphQL query.
+ * <p>
+ * The GraphQL API requires a token. Without token, each channel falls back to
+ * a {@link GithubChannel} and queries the REST API.
+ */
+public class GithubBatchChannel implements Channel {
+
+    /**
+     * GraphQL endpoint
+     */
+    static String graphql = "https://api.github.com/graphql";
+
+    /**
+     * Query of a single repository, aliased by its index in the batch.
+     * The latest release is never a draft nor a pre-release, as with {@link GithubChannel}.
+     */
+    static String query = "r{{ INDEX }}: repository(owner: {{ OWNER }}, name: {{ NAME }}) { latestRelease { tagName name description publishedAt releaseAssets(first: 1) { nodes { downloadUrl } } } } ";
+
+    /**
+     * Batches, by token.
+     */
+    static final Map<String, GithubBatch> batches = new ConcurrentHashMap<>();
+
+    /**
+     * Repository to lookup.
+     */
+    private final String repository;
+
+    /**
+     * Batch this channel is registered in, null without token.
+     */
+    private final GithubBatch batch;
+
+    /**
+     * REST channel used without token.
+     */
+    private final GithubChannel fallback;
+
+    /**
+     * True while the repository is registered in the batch.
+     */
+    private boolean registered;
+
+
+    public GithubBatchChannel(String repository) {
+        this(null, repository);
+    }
+
+    public GithubBatchChannel(String token, String repository) {
+        this.repository = repository;
+        if(token != null && !token.isEmpty()) {
+            this.batch = batches.computeIfAbsent(token, GithubBatch::new);
+            this.fallback = null;
+        }
+        else {
+            this.batch = null;
+            this.fallback = new GithubChannel(repository);
+        }
+    }
+
+    /**
+     * Add this repository to its batch, done when an updater of the channel is registered.
+     */
+    @Override
+    public synchronized void register() {
+        if(batch != null && !registered) {
+            batch.register(repository);
+            registered = true;
+        }
+    }
+
+    /**
+     * Remove this repository from its batch.
+     * Done when the last updater of the channel is stopped.
+     */
+    @Override
+    public synchronized void unregister() {
+        if(batch != null && registered) {
+            batch.unregister(repository);
+            registered = false;
+        }
+    }
+
+    @Override
+    public String id() {
+        return "github:" + GithubChannel.host + GithubChannel.query.replace("{{ REPOSITORY }}", repository) + Channel.credentials(batch != null ? batch.token : null);
+    }
+
+    @Override
+    public Map<String, Validator> validators() {
+        return fallback != null ? fallback.validators() : Channel.super.validators();
+    }
+
+    @Override
+    public void restore(Update update, Map<String, Validator> validators) {
+        if(fallback != null) fallback.restore(update, validators);
+    }
+
+    @Override
+    public long retryAt() {
+        return fallback != null ? fallback.retryAt() : batch.retryAt();
+    }
+
+    @Override
+    public Pair<Result,Update> read() {
+        return fallback != null ? fallback.read() : batch.resolve(repository);
+    }
+
+    /**
+     * Build the GraphQL query of the given repositories
+     *
+     * @param repositories repositories, as owner/name
+     * @return GraphQL query
+     */
+    static String query(List<String> repositories) {
+        Gson gson = new Gson();
+        StringBuilder builder = new StringBuilder("query { ");
+        for(int index = 0; index < repositories.size(); index++) {
+            String[] repository = repositories.get(index).split("/", 2);
+            builder.append(query
+                    .replace("{{ INDEX }}", Integer.toString(index))
+                    .replace("{{ OWNER }}", gson.toJson(repository[0]))
+                    .replace("{{ NAME }}", gson.toJson(repository.length > 1 ? repository[1] : "")));
+        }
+        return builder.append("}").toString();
+    }
+
+    /**
+     * Read the latest release of each repository from the GraphQL response.
+     * <p>
+     * A failed query may still be answered with a 200 status: the repositories without data
+     * are then in error, or rate limited if the errors say so.
+     *
+     * @param reader       GraphQL response
+     * @param repositories queried repositories, in query order
+     * @return {@link Result} and latest {@link Update} by repository
+     * @throws IOException if the response cannot be read
+     */
+    static Map<String, Pair<Result,Update>> parse(Reader reader, List<String> repositories) throws IOException {
+        Map<String, Pair<Result,Update>> updates = new HashMap<>();
+        JsonReader json = new JsonReader(reader);
+        if(Json.isEmpty(json)) {
+            return updates;
+        }
+
+        Result failure = null;
+        json.beginObject();
+        while(json.hasNext()) {
+            String name = json.nextName();
+            if(name.equals("errors") && json.peek() == JsonToken.BEGIN_ARRAY) {
+                failure = parseErrors(json);
+                continue;
+            }
+            if(!name.equals("data") || json.peek() != JsonToken.BEGIN_OBJECT) {
+                json.skipValue();
+                continue;
+            }
+            json.beginObject();
+            while(json.hasNext()) {
+                String alias = json.nextName();
+                int index = Integer.parseInt(alias.substring(1));
+                updates.put(repositories.get(index), parseRepository(json));
+            }
+            json.endObject();
+        }
+        json.endObject();
+
+        // Repositories missing from a failed query
+        if(failure != null) {
+            for(String repository : repositories) {
+                updates.putIfAbsent(repository, new Pair<>(failure, null));
+            }
+        }
+
+        return updates;
+    }
+
+    /**
+     * Read the errors of the GraphQL response.
+     *
+     * @return {@link Result#RATE_LIMITED} if an error says so, {@link Result#ERROR} otherwise
+     */
+    private static Result parseErrors(JsonReader json) throws IOException {
+        Result failure = Result.ERROR;
+        json.beginArray();
+        while(json.hasNext()) {
+            if(json.peek() != JsonToken.BEGIN_OBJECT) {
+                json.skipValue();
+                continue;
+            }
+            json.beginObject();
+            if("RATE_LIMITED".equals(Json.findString(json, "type"))) {
+                failure = Result.RATE_LIMITED;
+            }
+            json.endObject();
+        }
+        json.endArray();
+        return failure;
+    }
+
+    /**
+     * Read the latest release of a repository.
+     */
+    private static Pair<Result,Update> parseRepository(JsonReader json) throws IOException {
+
+        // Repository not found
+        if(json.peek() == JsonToken.NULL) {
+            json.nextNull();
+            return new Pair<>(Result.ERROR, null);
+        }
+
+        String name = null;
+        String tag = null;
+        String body = null;
+        String downloadUrl = null;
+        long released = 0;
+        boolean found = false;
+
+        // repository.latestRelease, null without published release
+        json.beginObject();
+        while(json.hasNext()) {
+            if(!json.nextName().equals("latestRelease") || json.peek() != JsonToken.BEGIN_OBJECT) {
+                json.skipValue();
+                continue;
+            }
+            found = true;
+            json.beginObject();
+            while(json.hasNext()) {
+                switch(json.nextName()) {
+                    case "name":
+                        name = Json.nextString(json);
+                        break;
+                    case "tagName":
+                        tag = Json.nextString(json);
+                        break;
+                    case "description":
+                        body = Json.nextString(json);
+                        break;
+                    case "publishedAt":
+                        released = Json.nextDate(json);
+                        break;
+                    case "releaseAssets":
+                        downloadUrl = firstAsset(json);
+                        break;
+                    default:
+                        json.skipValue();
+                }
+            }
+            json.endObject();
+        }
+        json.endObject();
+
+        // No release or no asset found
+        if(!found || downloadUrl == null) {
+            return new Pair<>(Result.REPO_NO_RELEASES, null);
+        }
+
+        // Get version from release name
+        Version version = tag != null ? Version.parse(tag) : null;
+
+        // Create new update
+        if(version != null) {
+            Update update = new Update(name, version, new URL(downloadUrl), body);
+            update.setReleased(released);
+            return new Pair<>(Result.SUCCESS, update);
+        }
+
+        return new Pair<>(Result.ERROR, null);
+    }
+
+    /**
+     * Read the download url of the first asset: releaseAssets.nodes[0].downloadUrl
+     */
+    private static String firstAsset(JsonReader json) throws IOException {
+        String downloadUrl = null;
+        json.beginObject();
+        while(json.hasNext()) {
+            if(!json.nextName().equals("nodes")) {
+                json.skipValue();
+                continue;
+            }
+            json.beginArray();
+            while(json.hasNext()) {
+                if(downloadUrl != null) {
+                    json.skipValue();
+                    continue;
+                }
+                json.beginObject();
+                downloadUrl = Json.findString(json, "downloadUrl");
+                json.endObject();
+            }
+            json.endArray();
+        }
+        json.endObject();
+        return downloadUrl;
+    }
+
+
+    /**
+     * Repositories sharing the same token.
+     */
+    static class GithubBatch extends Batch {
+
+        /**
+         * GitHub token.
+         */
+        private final String token;
+
+
+        GithubBatch(String token) {
+            this.token = token;
+        }
+
+        @Override
+        protected Map<String, Pair<Result,Update>> read(Set<String> projects) {
+            HttpURLConnection connection = null;
+            try {
+                List<String> repositories = new ArrayList<>(projects);
+                JsonObject request = new JsonObject();
+                request.addProperty("query", query(repositories));
+                byte[] body = request.toString().getBytes(StandardCharsets.UTF_8);
+
+                connection = HttpConnection.Connection(new URL(graphql));
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Authorization", "bearer " + token);
+                connection.setRequestProperty("Content-Type", "application/json");
+                try(OutputStream output = connection.getOutputStream()) {
+                    output.write(body);
+                }
+                int status = HttpConnection.responseCode(connection);
+
+                // The releases are present in the repositories
+                if(status >= 200 && status < 300) {
+                    Map<String, Pair<Result,Update>> updates;
+                    try(Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+                        updates = parse(reader, repositories);
+                    }
+
+                    // Rate limited query, answered with a 200 status
+                    if(updates.values().stream().anyMatch(read -> read.getKey() == Result.RATE_LIMITED)) {
+                        long reset = connection.getHeaderFieldLong("X-RateLimit-Reset", 0);
+                        long retryAt = reset > 0 ? TimeUnit.SECONDS.toMillis(reset) : System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+                        return limited(projects, new RateLimitedException(connection.getURL(), retryAt));
+                    }
+                    return updates;
+                }
+
+                return null;
+            }
+            catch(RateLimitedException e) {
+                return limited(projects, e);
+            }
+            catch(Exception e) {
+                return null;
+            }
+            finally {
+                HttpConnection.close(connection);
+            }
+        }
+    }
+}
@@ -20,19 +20,26 @@ package com.github.hexocraft.updater.channels;
 import com.github.hexocraft.updater.Update;
 import com.github.hexocraft.updater.Version;
 import com.github.hexocraft.updater.enumeration.Release;
+import com.github.hexocraft.updater.enumeration.Resolution;
 import com.github.hexocraft.updater.enumeration.Result;
 import com.github.hexocraft.updater.utilities.HttpConnection;
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.github.hexocraft.updater.utilities.Json;
+import com.github.hexocraft.updater.utilities.RateLimitedException;
+import com.github.hexocraft.updater.utilities.Validator;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import javafx.util.Pair;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 public class GithubChannel implements Channel {
 
@@ -46,6 +53,27 @@ public class GithubChannel implements Channel {
      */
     static String query = "/repos/{{ REPOSITORY }}/releases";
 
+    /**
+     * Number of releases by page when looking for the newest release, usually found on the first page.
+     */
+    static int pageSize = 10;
+
+    /**
+     * Number of releases by page when looking for the highest version.
+     * The first scan reads the whole history, so the pages are as large as GitHub allows.
+     */
+    static int highestPageSize = 100;
+
+    /**
+     * Maximum number of pages read by a scan, older releases are ignored.
+     */
+    static int maxPages = 100;
+
+    /**
+     * Request headers
+     */
+    private static final Map<String, String> headers = Collections.singletonMap("Accept", "application/vnd.github.v3+json");
+
     /**
      * URL to query.
      */
@@ -56,71 +84,450 @@ public class GithubChannel implements Channel {
      */
     protected String repository = null;
 
+    /**
+     * How the latest release is resolved.
+     */
+    private Resolution resolution = Resolution.LATEST;
+
+    /**
+     * Accept pre-releases.
+     */
+    private boolean preReleases = false;
+
+    /**
+     * Validators of the last response.
+     */
+    private Validator validator;
+
+    /**
+     * Last parsed result, returned when the releases did not change.
+     */
+    private Pair<Result,Update> latest;
+
+    /**
+     * Id of the newest release when the releases were last scanned, -1 if never scanned.
+     * Older releases are not read again when looking for the highest version.
+     */
+    private long scanned = -1;
+
+    /**
+     * Time from which the host accepts requests again, after a rate limited read.
+     */
+    private volatile long retryAt;
+
 
     public GithubChannel(String repository) {
+        this.repository = repository;
+        this.url = url();
+    }
+
+    /**
+     * Define how the latest release is resolved.
+     * Default to {@link Resolution#LATEST}.
+     *
+     * @param resolution {@link Resolution}
+     * @return current instance
+     */
+    public synchronized GithubChannel setResolution(Resolution resolution) {
+        this.resolution = resolution;
+        this.url = url();
+        reset();
+        return this;
+    }
+
+    /**
+     * Accept pre-releases, either marked as such or tagged with a pre-release version.
+     * Disabled by default.
+     * <p>
+     * GitHub latest release is never a pre-release, releases are then scanned as with {@link Resolution#NEWEST}.
+     *
+     * @param preReleases true to accept pre-releases
+     * @return current instance
+     */
+    public synchronized GithubChannel setPreReleases(boolean preReleases) {
+        this.preReleases = preReleases;
+        this.url = url();
+        reset();
+        return this;
+    }
+
+    /**
+     * @return resolution used for the requests
+     */
+    private Resolution mode() {
+        return resolution == Resolution.LATEST && preReleases ? Resolution.NEWEST : resolution;
+    }
+
+    /**
+     * @return URL of the latest release, or of the first page of releases
+     */
+    private URL url() {
         try {
-            this.repository = repository;
-            this.url = new URL((host + query).replace("{{ REPOSITORY }}", repository));
+            String releases = (host + query).replace("{{ REPOSITORY }}", repository);
+            Resolution mode = mode();
+            return new URL(mode == Resolution.LATEST ? releases + "/latest" : releases + "?per_page=" + (mode == Resolution.HIGHEST ? highestPageSize : pageSize));
         }
         catch(Exception ignored) {
+            return null;
         }
     }
 
+    private void reset() {
+        validator = null;
+        latest = null;
+        scanned = -1;
+    }
+
+    /**
+     * @return resolution and filters, part of the identity of the channel
+     */
+    private String variant() {
+        return resolution.name().toLowerCase() + (preReleases ? "+pre-releases" : "");
+    }
+
+    @Override
+    public String id() {
+        return "github:" + url + " " + variant();
+    }
+
+    @Override
+    public synchronized Map<String, Validator> validators() {
+        return validator != null ? Collections.singletonMap(url.toString(), validator) : Collections.emptyMap();
+    }
+
+    @Override
+    public synchronized void restore(Update update, Map<String, Validator> validators) {
+        if(latest == null && update != null) {
+            latest = new Pair<>(Result.SUCCESS, update);
+            validator = validators.get(url.toString());
+        }
+    }
+
+    @Override
+    public long retryAt() {
+        return retryAt;
+    }
+
+    /**
+     * Find the latest update.
+     * <p>
+     * The request is shared with the channels of the same repository reading at the same moment.
+     *
+     * @return {@link Result} and latest {@link Update} if found
+     */
     @Override
     public Pair<Result,Update> read() {
+        return Flights.update(url, headers, variant(), this::request);
+    }
+
+    private synchronized Pair<Result,Update> request() {
+        try {
+            return mode() == Resolution.LATEST ? requestLatest() : scan();
+        }
+        catch(RateLimitedException e) {
+            retryAt = e.retryAt();
+            return new Pair<>(Result.RATE_LIMITED, null);
+        }
+        catch(Exception e) {
+            return new Pair<>(Result.ERROR, null);
+        }
+    }
+
+    /**
+     * Read the latest release of the repository.
+     */
+    private Pair<Result,Update> requestLatest() throws IOException {
+        HttpURLConnection connection = null;
         try {
-            HttpURLConnection connection = HttpConnection.Connection(url);
-            connection.addRequestProperty("Accept", "application/vnd.github.v3+json");
-            connection = HttpConnection.Open(connection);
+            connection = open(url, true);
             int status = connection.getResponseCode();
 
-            // The file is present in the repository
-            if((status >= 200 && status < 300) || status == 304) {
+            // The release did not change since last request
+            if(status == HttpURLConnection.HTTP_NOT_MODIFIED && latest != null) {
+                return latest;
+            }
+
+            // The repository has no published release
+            if(status == HttpURLConnection.HTTP_NOT_FOUND) {
+                return new Pair<>(Result.REPO_NO_RELEASES, null);
+            }
+
+            // The release is present in the repository
+            if(status >= 200 && status < 300) {
+                validator = Validator.of(connection);
+                latest = null;
 
                 // Read response
-                String response = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)).lines().collect(Collectors.joining(System.lineSeparator()));
+                try(Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+                    Pair<Result,Update> read = parseLatest(reader);
+                    if(read.getKey() != Result.ERROR) latest = read;
+                    return read;
+                }
+            }
+
+            return new Pair<>(Result.ERROR, null);
+        }
+        finally {
+            HttpConnection.close(connection);
+        }
+    }
+
+    /**
+     * Read the releases page by page, following the Link headers.
+     * <p>
+     * The newest release stops the scan as soon as it is found. The highest version is certain once
+     * the newest release of the previous scan is reached: older releases were already compared.
+     */
+    private Pair<Result,Update> scan() throws IOException {
+        boolean highest = mode() == Resolution.HIGHEST;
+        URL page = url;
+        Validator pageValidator = null;
+        Update best = null;
+        long newest = -1;
+        boolean certain = false;
 
-                // Convert to json
-                JsonArray releases = new Gson().fromJson(response, JsonArray.class);
+        for(int pages = 0; page != null && !certain && pages < maxPages; pages++) {
+            HttpURLConnection connection = null;
+            try {
+                connection = open(page, pages == 0);
+                int status = connection.getResponseCode();
 
-                // No release found
-                if(response.isEmpty() || releases.size() == 0) {
-                    return new Pair<>(Result.REPO_NO_RELEASES, null);
+                // The releases did not change since last request
+                if(pages == 0 && status == HttpURLConnection.HTTP_NOT_MODIFIED && latest != null) {
+                    return latest;
+                }
+                if(status < 200 || status >= 300) {
+                    return new Pair<>(Result.ERROR, null);
+                }
+                if(pages == 0) {
+                    pageValidator = Validator.of(connection);
                 }
 
-                // Get the latest release
-                JsonObject release = releases.get(0).getAsJsonObject();
-                String name = release.get("name").getAsString();
-                String tag = release.get("tag_name").getAsString();
-                String body = release.get("body").getAsString();
-                Release type = (!release.get("draft").isJsonNull() || !release.get("prerelease").isJsonNull()) ? Release.RELEASE : Release.PRE_RELEASE;
-
-                // Get list of assets
-                JsonArray assets = release.get("assets").getAsJsonArray();
-                if(assets.size() == 0) {
-                    return new Pair<>(Result.REPO_NO_RELEASES, null);
+                // Read response
+                List<GithubRelease> releases;
+                try(Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+                    releases = parsePage(reader);
                 }
 
-                // Get first asset
-                String downloadUrl = assets.get(0).getAsJsonObject().get("browser_download_url").getAsString();
+                for(GithubRelease release : releases) {
+                    if(newest < 0) newest = release.id;
+                    if(highest && release.id >= 0 && release.id == scanned) {
+                        certain = true;
+                        break;
+                    }
+                    if(!accept(release, preReleases)) {
+                        continue;
+                    }
+                    if(!highest) {
+                        best = release.update;
+                        certain = true;
+                        break;
+                    }
+                    if(best == null || release.update.version().compareTo(best.version()) > 0) {
+                        best = release.update;
+                    }
+                }
+                page = HttpConnection.nextPage(connection);
+            }
+            finally {
+                HttpConnection.close(connection);
+            }
+        }
+
+        // Releases older than the previous scan hold the previous result
+        if(highest && certain && latest != null && latest.getValue() != null) {
+            Update previous = latest.getValue();
+            if(best == null || previous.version().compareTo(best.version()) > 0) best = previous;
+        }
 
+        validator = pageValidator;
+        scanned = highest ? newest : -1;
+        latest = new Pair<>(best != null ? Result.SUCCESS : Result.REPO_NO_RELEASES, best);
+        return latest;
+    }
 
-                // Get version from release name
-                Version version = Version.parse(tag);
+    /**
+     * Send a request to the repository, conditional if a result is known
+     *
+     * @param url       requested url
+     * @param firstPage true for the first page, the only one whose validator is kept
+     */
+    private HttpURLConnection open(URL url, boolean firstPage) throws IOException {
+        HttpURLConnection connection = HttpConnection.Connection(url);
+        try {
+            headers.forEach(connection::addRequestProperty);
+            if(firstPage && latest != null && validator != null) validator.apply(connection);
+            return HttpConnection.Open(connection);
+        }
+        catch(IOException e) {
+            HttpConnection.close(connection);
+            throw e;
+        }
+    }
 
-                // Create new update
-                if(version != null) {
-                    Update update = new Update(name, version, new URL(downloadUrl), body);
-                    return new Pair<>(Result.SUCCESS, update);
-                }
+    /**
+     * @param release     release to test
+     * @param preReleases true to accept pre-releases
+     * @return true if the release can be returned as an update
+     */
+    static boolean accept(GithubRelease release, boolean preReleases) {
+        return release.update != null && !release.draft && (preReleases || release.type() == Release.RELEASE);
+    }
+
+    /**
+     * Read the latest release response, made of a single release.
+     *
+     * @param reader latest release response
+     * @return {@link Result} and latest {@link Update} if found
+     * @throws IOException if the response cannot be read
+     */
+    static Pair<Result,Update> parseLatest(Reader reader) throws IOException {
+        JsonReader json = new JsonReader(reader);
 
-                return new Pair<>(Result.ERROR, null);
+        // No release found
+        if(Json.isEmpty(json)) {
+            return new Pair<>(Result.REPO_NO_RELEASES, null);
+        }
+
+        GithubRelease release = parseRelease(json);
+        return accept(release, true) ? new Pair<>(Result.SUCCESS, release.update) : new Pair<>(Result.REPO_NO_RELEASES, null);
+    }
+
+    /**
+     * Read a page of the releases response.
+     *
+     * @param reader releases response
+     * @return releases of the page, newest first
+     * @throws IOException if the response cannot be read
+     */
+    static List<GithubRelease> parsePage(Reader reader) throws IOException {
+        List<GithubRelease> releases = new ArrayList<>();
+        JsonReader json = new JsonReader(reader);
+        if(Json.isEmpty(json)) {
+            return releases;
+        }
+
+        json.beginArray();
+        while(json.hasNext()) {
+            releases.add(parseRelease(json));
+        }
+        json.endArray();
+        return releases;
+    }
+
+    /**
+     * Read a release object.
+     *
+     * @param json {@link JsonReader} positioned on the release
+     * @return {@link GithubRelease}
+     * @throws IOException if the release cannot be read
+     */
+    private static GithubRelease parseRelease(JsonReader json) throws IOException {
+        GithubRelease release = new GithubRelease();
+        String name = null;
+        String tag = null;
+        String body = null;
+        String downloadUrl = null;
+        String digest = null;
+        long released = 0;
+        json.beginObject();
+        while(json.hasNext()) {
+            switch(json.nextName()) {
+                case "id":
+                    if(json.peek() == JsonToken.NUMBER) release.id = json.nextLong();
+                    else json.skipValue();
+                    break;
+                case "name":
+                    name = Json.nextString(json);
+                    break;
+                case "tag_name":
+                    tag = Json.nextString(json);
+                    break;
+                case "body":
+                    body = Json.nextString(json);
+                    break;
+                case "draft":
+                    release.draft = Json.nextBoolean(json);
+                    break;
+                case "prerelease":
+                    release.prerelease = Json.nextBoolean(json);
+                    break;
+                case "published_at":
+                    released = Json.nextDate(json);
+                    break;
+                case "assets":
+                    String[] asset = firstAsset(json);
+                    downloadUrl = asset[0];
+                    digest = asset[1];
+                    break;
+                default:
+                    json.skipValue();
             }
+        }
+        json.endObject();
 
-            return new Pair<>(Result.ERROR, null);
+        // Get version from release tag, a release without asset cannot be downloaded
+        Version version = tag != null ? Version.parse(tag) : null;
+        if(version != null && downloadUrl != null) {
+            release.update = new Update(name, version, new URL(downloadUrl), body);
+            release.update.setDigest(digest);
+            release.update.setReleased(released);
         }
-        catch(Exception e) {
-            return new Pair<>(Result.ERROR, null);
+        return release;
+    }
+
+    /**
+     * Read the download url and digest of the first asset and skip the others.
+     *
+     * @param json {@link JsonReader} positioned on the assets array
+     * @return download url and digest, null if the release has no asset
+     * @throws IOException if the assets cannot be read
+     */
+    private static String[] firstAsset(JsonReader json) throws IOException {
+        String[] asset = new String[2];
+        json.beginArray();
+        if(json.hasNext()) {
+            json.beginObject();
+            while(json.hasNext()) {
+                switch(json.nextName()) {
+                    case "browser_download_url":
+                        asset[0] = Json.nextString(json);
+                        break;
+                    case "digest":
+                        asset[1] = Json.nextString(json);
+                        break;
+                    default:
+                        json.skipValue();
+                }
+            }
+            json.endObject();
+        }
+        while(json.hasNext()) {
+            json.skipValue();
+        }
+        json.endArray();
+        return asset;
+    }
+
+    /**
+     * A release of the releases response.
+     */
+    static class GithubRelease {
+
+        private long id = -1;
+        private boolean draft;
+        private boolean prerelease;
+
+        /**
+         * Update of the release, null if the release has no asset or its tag is not a version.
+         */
+        private Update update;
+
+        /**
+         * @return {@link Release#PRE_RELEASE} if marked as such or tagged with a pre-release version
+         */
+        Release type() {
+            return prerelease || (update != null && update.version().getRelease() == Release.PRE_RELEASE) ? Release.PRE_RELEASE : Release.RELEASE;
         }
     }
 }
@@ -21,17 +21,23 @@ import com.github.hexocraft.updater.Update;
 import com.github.hexocraft.updater.Version;
 import com.github.hexocraft.updater.enumeration.Result;
 import com.github.hexocraft.updater.utilities.HttpConnection;
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
+import com.github.hexocraft.updater.utilities.Json;
+import com.github.hexocraft.updater.utilities.RateLimitedException;
+import com.github.hexocraft.updater.utilities.Scheduler;
+import com.github.hexocraft.updater.utilities.Validator;
+import com.google.gson.stream.JsonReader;
 import javafx.util.Pair;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
-import java.util.stream.Collectors;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class SpigotChannel implements Channel {
 
@@ -60,6 +66,25 @@ public class SpigotChannel implements Channel {
      */
     private String resourceId;
 
+    /**
+     * Validators of the last responses.
+     */
+    private volatile Validator resourceValidator;
+    private volatile Validator versionValidator;
+    private volatile Validator updateValidator;
+
+    /**
+     * Last parsed values, reused when a resource did not change.
+     */
+    private volatile Update lastResource;
+    private volatile Version lastVersion;
+    private volatile String lastDescription;
+
+    /**
+     * Time from which the host accepts requests again, after a rate limited read.
+     */
+    private volatile long retryAt;
+
 
     public SpigotChannel(String resourceId) {
         try {
@@ -73,91 +98,204 @@ public class SpigotChannel implements Channel {
     }
 
     @Override
-    public Pair<Result,Update> read() {
-        Pair<Result,Update> resource = getResource();
-        Result result = resource.getKey();
-        Update update = resource.getValue();
+    public String id() {
+        return "spigot:" + queryResourceUrl;
+    }
 
-        if(result == Result.SUCCESS) {
-            Pair<Result,Update> latestVersion = getLatestVersion(update);
-            result = latestVersion.getKey();
-            update = latestVersion.getValue();
+    @Override
+    public synchronized Map<String, Validator> validators() {
+        Map<String, Validator> validators = new HashMap<>();
+        if(resourceValidator != null) validators.put(queryResourceUrl.toString(), resourceValidator);
+        if(versionValidator != null) validators.put(queryVersionUrl.toString(), versionValidator);
+        if(updateValidator != null) validators.put(queryUpdateUrl.toString(), updateValidator);
+        return validators;
+    }
+
+    @Override
+    public synchronized void restore(Update update, Map<String, Validator> validators) {
+        if(lastResource == null && update != null) {
+            Update resource = new Update(update.title(), null, update.downloadUrl());
+            resource.setReleased(update.released());
+            lastResource = resource;
+            lastVersion = update.version();
+            lastDescription = update.description();
+            resourceValidator = validators.get(queryResourceUrl.toString());
+            versionValidator = validators.get(queryVersionUrl.toString());
+            updateValidator = validators.get(queryUpdateUrl.toString());
         }
+    }
 
-        if(result == Result.SUCCESS) {
-            Pair<Result,Update> latestUpdate = getLatestUpdate(update);
-            result = latestUpdate.getKey();
-            update = latestUpdate.getValue();
+    @Override
+    public long retryAt() {
+        return retryAt;
+    }
+
+    /**
+     * Find the latest update.
+     * <p>
+     * Blocks the calling thread, which sends the three spiget requests one after the other
+     * and never waits for the network executor.
+     *
+     * @return {@link Result} and latest {@link Update} if found
+     */
+    @Override
+    public Pair<Result,Update> read() {
+        try {
+            Pair<Result,Update> read = Flights.update(queryResourceUrl, this::getResource);
+            if(read.getKey() == Result.SUCCESS) {
+                read = mergeVersion(read, Flights.read(queryVersionUrl, this::getLatestVersion));
+            }
+            if(read.getKey() == Result.SUCCESS) {
+                read = mergeDescription(read, Flights.read(queryUpdateUrl, this::getLatestUpdate));
+            }
+            return read;
+        }
+        catch(RuntimeException e) {
+            return new Pair<>(Result.ERROR, null);
+        }
+    }
+
+    /**
+     * Find the latest update without blocking the calling thread.
+     * <p>
+     * Resource, latest version and latest update do not depend on each other,
+     * so the three requests are sent concurrently and merged once finished.
+     * Each request is shared with the channels of the same resource reading at the same moment.
+     *
+     * @return future completed with {@link Result} and latest {@link Update} if found
+     */
+    @Override
+    public CompletableFuture<Pair<Result,Update>> readAsync() {
+        CompletableFuture<Pair<Result,Update>> resource = CompletableFuture.supplyAsync(() -> Flights.update(queryResourceUrl, this::getResource), Scheduler.io());
+        CompletableFuture<Pair<Result,Version>> version = CompletableFuture.supplyAsync(() -> Flights.read(queryVersionUrl, this::getLatestVersion), Scheduler.io());
+        CompletableFuture<Pair<Result,String>> description = CompletableFuture.supplyAsync(() -> Flights.read(queryUpdateUrl, this::getLatestUpdate), Scheduler.io());
+
+        return resource.thenCombine(version, SpigotChannel::mergeVersion)
+                .thenCombine(description, SpigotChannel::mergeDescription)
+                .exceptionally(e -> new Pair<>(Result.ERROR, null));
+    }
+
+    /**
+     * Merge the latest version into the resource
+     */
+    private static Pair<Result,Update> mergeVersion(Pair<Result,Update> resource, Pair<Result,Version> version) {
+        if(resource.getKey() != Result.SUCCESS) {
+            return resource;
+        }
+        if(version.getKey() != Result.SUCCESS) {
+            return new Pair<>(version.getKey(), null);
         }
+        resource.getValue().setVersion(version.getValue());
+        return resource;
+    }
 
-        return new Pair<>(result, update);
+    /**
+     * Merge the latest update description into the resource
+     */
+    private static Pair<Result,Update> mergeDescription(Pair<Result,Update> resource, Pair<Result,String> description) {
+        if(resource.getKey() != Result.SUCCESS) {
+            return resource;
+        }
+        if(description.getKey() != Result.SUCCESS) {
+            return new Pair<>(description.getKey(), null);
+        }
+        if(description.getValue() != null) {
+            resource.getValue().setDescription(description.getValue());
+        }
+        return resource;
     }
 
     private Pair<Result,Update> getResource() {
+        HttpURLConnection connection = null;
         try {
-            HttpURLConnection connection = HttpConnection.openConnection(queryResourceUrl);
+            connection = HttpConnection.Connection(queryResourceUrl);
+            if(lastResource != null && resourceValidator != null) resourceValidator.apply(connection);
+            connection = HttpConnection.Open(connection);
             int status = connection.getResponseCode();
 
+            // The resource did not change since last request
+            if(status == HttpURLConnection.HTTP_NOT_MODIFIED && lastResource != null) {
+                Update update = new Update(lastResource.title(), null, lastResource.downloadUrl());
+                update.setReleased(lastResource.released());
+                return new Pair<>(Result.SUCCESS, update);
+            }
+
             // The file is present in the repository
-            if((status >= 200 && status < 300) || status == 304) {
+            if(status >= 200 && status < 300) {
+                resourceValidator = Validator.of(connection);
+                lastResource = null;
 
                 // Read response
-                String response = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)).lines().collect(Collectors.joining(System.lineSeparator()));
+                Update update;
+                try(Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+                    update = parseResource(reader);
+                }
 
                 // No release found
-                if(response.isEmpty()) {
+                if(update == null) {
                     return new Pair<>(Result.REPO_NO_RELEASES, null);
                 }
-
-                // Convert to json
-                JsonObject resource = new Gson().fromJson(response, JsonObject.class);
-
-                // Get version info
-                String name = resource.get("name").getAsString();
-                String url = resource.get("file").getAsJsonObject().get("url").getAsString();
-
-                // Create new update
-                Update update = new Update(name, null, new URL(spigot + "/" + url));
+                Update resource = new Update(update.title(), null, update.downloadUrl());
+                resource.setReleased(update.released());
+                lastResource = resource;
 
                 return new Pair<>(Result.SUCCESS, update);
             }
 
             return new Pair<>(Result.ERROR, null);
         }
+        catch(RateLimitedException e) {
+            retryAt = e.retryAt();
+            return new Pair<>(Result.RATE_LIMITED, null);
+        }
         catch(Exception e) {
             return new Pair<>(Result.ERROR, null);
         }
+        finally {
+            HttpConnection.close(connection);
+        }
     }
 
-    private Pair<Result,Update> getLatestVersion(Update update) {
+    private Pair<Result,Version> getLatestVersion() {
+        HttpURLConnection connection = null;
         try {
-            HttpURLConnection connection = HttpConnection.openConnection(queryVersionUrl);
+            connection = HttpConnection.Connection(queryVersionUrl);
+            if(lastVersion != null && versionValidator != null) versionValidator.apply(connection);
+            connection = HttpConnection.Open(connection);
             int status = connection.getResponseCode();
 
+            // The version did not change since last request
+            if(status == HttpURLConnection.HTTP_NOT_MODIFIED && lastVersion != null) {
+                return new Pair<>(Result.SUCCESS, lastVersion);
+            }
+
             // The file is present in the repository
-            if((status >= 200 && status < 300) || status == 304) {
+            if(status >= 200 && status < 300) {
+                versionValidator = Validator.of(connection);
+                lastVersion = null;
 
                 // Read response
-                String response = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)).lines().collect(Collectors.joining(System.lineSeparator()));
-
-                // No release found
-                if(response.isEmpty()) {
-                    return new Pair<>(Result.REPO_NO_RELEASES, null);
+                String name;
+                try(Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+                    JsonReader json = new JsonReader(reader);
+
+                    // No release found
+                    if(Json.isEmpty(json)) {
+                        return new Pair<>(Result.REPO_NO_RELEASES, null);
+                    }
+
+                    // Get version info
+                    json.beginObject();
+                    name = Json.findString(json, "name");
                 }
 
-                // Convert to json
-                JsonObject latestVersion = new Gson().fromJson(response, JsonObject.class);
-
-                // Get version info
-                String name = latestVersion.get("name").getAsString();
-
                 // Get version from release name
-                Version version = Version.parse(name);
+                Version version = name != null ? Version.parse(name) : null;
 
                 // Create new update
                 if(version != null) {
-                    update.setVersion(version);
-                    return new Pair<>(Result.SUCCESS, update);
+                    lastVersion = version;
+                    return new Pair<>(Result.SUCCESS, version);
                 }
 
                 return new Pair<>(Result.ERROR, null);
@@ -165,43 +303,120 @@ public class SpigotChannel implements Channel {
 
             return new Pair<>(Result.ERROR, null);
         }
+        catch(RateLimitedException e) {
+            retryAt = e.retryAt();
+            return new Pair<>(Result.RATE_LIMITED, null);
+        }
         catch(Exception e) {
             return new Pair<>(Result.ERROR, null);
         }
+        finally {
+            HttpConnection.close(connection);
+        }
     }
 
-    private Pair<Result,Update> getLatestUpdate(Update update) {
+    private Pair<Result,String> getLatestUpdate() {
+        HttpURLConnection connection = null;
         try {
-            HttpURLConnection connection = HttpConnection.openConnection(queryUpdateUrl);
+            connection = HttpConnection.Connection(queryUpdateUrl);
+            if(lastDescription != null && updateValidator != null) updateValidator.apply(connection);
+            connection = HttpConnection.Open(connection);
             int status = connection.getResponseCode();
 
+            // The update did not change since last request
+            if(status == HttpURLConnection.HTTP_NOT_MODIFIED && lastDescription != null) {
+                return new Pair<>(Result.SUCCESS, lastDescription);
+            }
+
             // The file is present in the repository
-            if((status >= 200 && status < 300) || status == 304) {
+            if(status >= 200 && status < 300) {
+                updateValidator = Validator.of(connection);
+                lastDescription = null;
 
                 // Read response
-                String response = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)).lines().collect(Collectors.joining(System.lineSeparator()));
+                String description;
+                try(Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+                    description = parseDescription(reader);
+                }
 
-                // No release found
-                if(response.isEmpty()) {
+                // No update found
+                if(description == null) {
                     return new Pair<>(Result.SUCCESS, null);
                 }
 
-                // Convert to json
-                JsonObject latestUpdate = new Gson().fromJson(response, JsonObject.class);
-
-                // Get update info
-                String description = new String(Base64.getDecoder().decode(latestUpdate.get("description").getAsString()));
-
-                // update
-                update.setDescription(description);
-
-                return new Pair<>(Result.SUCCESS, update);
+                lastDescription = description;
+                return new Pair<>(Result.SUCCESS, description);
             }
 
             return new Pair<>(Result.ERROR, null);
         }
+        catch(RateLimitedException e) {
+            retryAt = e.retryAt();
+            return new Pair<>(Result.RATE_LIMITED, null);
+        }
         catch(Exception e) {
             return new Pair<>(Result.ERROR, null);
         }
+        finally {
+            HttpConnection.close(connection);
+        }
+    }
+
+    /**
+     * Read the resource response.
+     *
+     * @param reader resource response
+     * @return {@link Update} without version, or null if the response is empty
+     * @throws IOException if the response cannot be read
+     */
+    static Update parseResource(Reader reader) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        if(Json.isEmpty(json)) {
+            return null;
+        }
+
+        String name = null;
+        String url = null;
+        long updated = 0;
+        json.beginObject();
+        while(json.hasNext()) {
+            switch(json.nextName()) {
+                case "name":
+                    name = Json.nextString(json);
+                    break;
+                case "file":
+                    json.beginObject();
+                    url = Json.findString(json, "url");
+                    json.endObject();
+                    break;
+                case "updateDate":
+                    updated = Json.nextSeconds(json);
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+
+        Update update = new Update(name, null, new URL(spigot + "/" + url));
+        update.setReleased(updated);
+        return update;
+    }
+
+    /**
+     * Read the latest update response.
+     *
+     * @param reader update response
+     * @return decoded description, or null if the response is empty
+     * @throws IOException if the response cannot be read
+     */
+    static String parseDescription(Reader reader) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        if(Json.isEmpty(json)) {
+            return null;
+        }
+
+        json.beginObject();
+        String description = Json.findString(json, "description");
+        return description != null ? new String(Base64.getDecoder().decode(description), StandardCharsets.UTF_8) : null;
     }
 }
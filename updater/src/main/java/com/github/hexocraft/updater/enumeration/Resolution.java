@@ -0,0 +1,45 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.enumeration;
+
+/**
+ * How a channel resolves the latest release of a project.
+ */
+public enum Resolution {
+
+    /**
+     * The release marked as latest by the repository.
+     *
+     * GitHub answers with its latest release, a single small response. Bukkit files are read in upload order.
+     */
+    LATEST,
+
+    /**
+     * The most recently published release.
+     *
+     * GitHub releases are read page by page until one matches.
+     */
+    NEWEST,
+
+    /**
+     * The release with the highest version.
+     *
+     * GitHub releases are all read once, then only the releases published since the previous read.
+     */
+    HIGHEST
+}
@@ -43,6 +43,11 @@ public enum Result {
    */
   REPO_NO_RELEASES,
 
+  /**
+   * The repository refused the request, or its request budget is exhausted and the check was deferred.
+   */
+  RATE_LIMITED,
+
   /**
    * An error occurred.
    */
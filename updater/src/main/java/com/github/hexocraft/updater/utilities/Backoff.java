@@ -0,0 +1,77 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with decorrelated jitter.
+ * <p>
+ * Each delay is drawn between the base delay and three times the previous one, then capped.
+ * Clients failing together spread their retries instead of retrying in step.
+ */
+public class Backoff {
+
+    /**
+     * Last delay in milliseconds, 0 after a success.
+     */
+    private long delay;
+
+    /**
+     * Consecutive failures.
+     */
+    private int failures;
+
+
+    /**
+     * Record a failure
+     *
+     * @param base minimum delay in milliseconds
+     * @param cap  maximum delay in milliseconds
+     * @return delay before the next attempt in milliseconds
+     */
+    public synchronized long failure(long base, long cap) {
+        long upper = Math.max(base, delay) * 3;
+        long next = base + (long) (ThreadLocalRandom.current().nextDouble() * Math.max(upper - base, 0));
+        delay = Math.max(base, Math.min(cap, next));
+        failures++;
+        return delay;
+    }
+
+    /**
+     * Record a success, the next failure starts again from the base delay
+     */
+    public synchronized void success() {
+        delay = 0;
+        failures = 0;
+    }
+
+    /**
+     * @return last delay in milliseconds, 0 after a success
+     */
+    public synchronized long delay() {
+        return delay;
+    }
+
+    /**
+     * @return number of consecutive failures
+     */
+    public synchronized int failures() {
+        return failures;
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import com.github.hexocraft.updater.Version;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Release cadence of a channel, learned from the versions it returns.
+ * <p>
+ * Release times come from the channel when it reports them, otherwise from the time the new version was seen.
+ * The expected time between two releases is the median gap between the known releases,
+ * or the time since the latest release when it is longer: a project silent for a long time
+ * is not expected to release soon.
+ */
+public class Cadence {
+
+    /**
+     * Number of release times kept.
+     */
+    static final int HISTORY = 8;
+
+    /**
+     * Number of checks during the expected time between two releases.
+     */
+    static final int CHECKS_PER_RELEASE = 24;
+
+    /**
+     * Known release times in epoch milliseconds, oldest first.
+     */
+    private final List<Long> releases = new ArrayList<>();
+
+    /**
+     * Latest version seen.
+     */
+    private Version latest;
+
+    /**
+     * Time of the first observation in epoch milliseconds.
+     */
+    private long since;
+
+
+    /**
+     * Record the latest version returned by the channel
+     *
+     * @param version  latest version
+     * @param released release time in epoch milliseconds, 0 if unknown
+     * @param now      current time in epoch milliseconds
+     */
+    public synchronized void observe(Version version, long released, long now) {
+        if(version == null || (latest != null && version.compareTo(latest) == 0)) {
+            return;
+        }
+
+        // The first version seen is only recorded if its release time is known
+        boolean first = latest == null;
+        latest = version;
+        if(first) since = now;
+        if(first && released <= 0) {
+            return;
+        }
+
+        long time = released > 0 ? Math.min(released, now) : now;
+        if(releases.isEmpty() || time > releases.get(releases.size() - 1)) {
+            releases.add(time);
+            if(releases.size() > HISTORY) releases.remove(0);
+        }
+    }
+
+    /**
+     * Period of the checks for the expected time between two releases
+     *
+     * @param min minimum period in milliseconds
+     * @param max maximum period in milliseconds
+     * @param now current time in epoch milliseconds
+     * @return period in milliseconds, between min and max
+     */
+    public synchronized long period(long min, long max, long now) {
+        long expected = now - (releases.isEmpty() ? since : releases.get(releases.size() - 1));
+        if(releases.size() > 1) {
+            List<Long> gaps = new ArrayList<>(releases.size() - 1);
+            for(int i = 1; i < releases.size(); i++) {
+                gaps.add(releases.get(i) - releases.get(i - 1));
+            }
+            Collections.sort(gaps);
+            expected = Math.max(expected, gaps.get(gaps.size() / 2));
+        }
+        return Math.max(min, Math.min(max, expected / CHECKS_PER_RELEASE));
+    }
+
+    /**
+     * @return number of known release times
+     */
+    public synchronized int releases() {
+        return releases.size();
+    }
+}
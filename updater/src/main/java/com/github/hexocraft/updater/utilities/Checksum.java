@@ -0,0 +1,157 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Expected digest of a file, written as "algorithm:hex" (ex: "sha256:2cf24d...").
+ */
+public class Checksum {
+
+    /**
+     * Algorithm name, as known by {@link MessageDigest}.
+     */
+    private final String algorithm;
+
+    /**
+     * Expected digest, lower case hex.
+     */
+    private final String hex;
+
+
+    public Checksum(String algorithm, String hex) {
+        this.algorithm = algorithm;
+        this.hex = hex.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Parse a checksum
+     * <p>
+     * A bare hex string is read according to its length (md5, sha1, sha256 or sha512).
+     *
+     * @param value "algorithm:hex" or hex string
+     * @return {@link Checksum} or null if the value is not a supported checksum
+     * @throws IllegalArgumentException if the length of the hex string matches no algorithm, or not the given one
+     */
+    public static Checksum parse(String value) {
+        if(value == null) {
+            return null;
+        }
+        value = value.trim();
+        int separator = value.indexOf(':');
+        String name = separator > 0 ? value.substring(0, separator) : null;
+        String hex = separator > 0 ? value.substring(separator + 1) : value;
+        if(hex.isEmpty() || !hex.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+            return null;
+        }
+
+        // A mistyped or truncated digest would fail every download with a mismatch
+        if(name == null) {
+            switch(hex.length()) {
+                case 32:
+                    name = "md5";
+                    break;
+                case 40:
+                    name = "sha1";
+                    break;
+                case 64:
+                    name = "sha256";
+                    break;
+                case 128:
+                    name = "sha512";
+                    break;
+                default:
+                    throw new IllegalArgumentException("Checksum of unknown length " + hex.length() + ": " + value);
+            }
+        }
+
+        String algorithm = algorithm(name);
+        if(algorithm == null) {
+            return null;
+        }
+        Checksum checksum = new Checksum(algorithm, hex);
+        if(checksum.newDigest().getDigestLength() * 2 != hex.length()) {
+            throw new IllegalArgumentException("Checksum length " + hex.length() + " does not match " + name + ": " + value);
+        }
+        return checksum;
+    }
+
+    /**
+     * @param name short algorithm name (md5, sha1, sha256, sha512)
+     * @return {@link MessageDigest} algorithm name, or null if unsupported
+     */
+    private static String algorithm(String name) {
+        switch(name.toLowerCase(Locale.ROOT).replace("-", "")) {
+            case "md5":
+                return "MD5";
+            case "sha1":
+                return "SHA-1";
+            case "sha256":
+                return "SHA-256";
+            case "sha512":
+                return "SHA-512";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return a new {@link MessageDigest} for this checksum
+     */
+    public MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        }
+        catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Test if a computed digest matches this checksum
+     *
+     * @param digest computed digest
+     * @return true on match
+     */
+    public boolean matches(byte[] digest) {
+        StringBuilder builder = new StringBuilder(digest.length * 2);
+        for(byte b : digest) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString().equals(hex);
+    }
+
+    public String algorithm() {
+        return algorithm;
+    }
+
+    public String hex() {
+        return hex;
+    }
+
+    /**
+     * @return checksum as "algorithm:hex"
+     */
+    @Override
+    public String toString() {
+        return algorithm.toLowerCase(Locale.ROOT).replace("-", "") + ":" + hex;
+    }
+}
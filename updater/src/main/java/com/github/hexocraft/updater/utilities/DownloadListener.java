@@ -0,0 +1,64 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Listener of a download.
+ * <p>
+ * Methods are called from the downloading threads, they should return quickly.
+ */
+public interface DownloadListener {
+
+    /**
+     * Called when the server answered, before the first byte is read.
+     *
+     * @param progress {@link DownloadProgress} of the download
+     */
+    default void onStart(DownloadProgress progress) {
+    }
+
+    /**
+     * Called periodically while the file is transferred.
+     *
+     * @param progress {@link DownloadProgress} of the download
+     */
+    default void onProgress(DownloadProgress progress) {
+    }
+
+    /**
+     * Called when the file is installed in the output folder.
+     *
+     * @param progress {@link DownloadProgress} of the download
+     * @param file     downloaded file
+     */
+    default void onComplete(DownloadProgress progress, Path file) {
+    }
+
+    /**
+     * Called when an attempt failed.
+     *
+     * @param progress {@link DownloadProgress} of the download
+     * @param cause    cause of the failure
+     * @param retry    true if the download will be tried again
+     */
+    default void onFailure(DownloadProgress progress, IOException cause, boolean retry) {
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a download, reported to a {@link DownloadListener}.
+ * <p>
+ * Values are those of the current attempt. The bytes resumed from a partial file
+ * are counted in {@link #bytes()} but not in the throughput.
+ */
+public class DownloadProgress {
+
+    /**
+     * Minimum time between two progress notifications in nanoseconds.
+     */
+    static long interval = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private final URL url;
+    private final DownloadListener listener;
+
+    private volatile int attempt;
+    private volatile long requested;
+    private volatile long firstByte;
+    private volatile long total = -1;
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong notified = new AtomicLong();
+
+
+    DownloadProgress(URL url, DownloadListener listener) {
+        this.url = url;
+        this.listener = listener;
+    }
+
+    /**
+     * A new attempt sends its request.
+     */
+    void request(int attempt) {
+        this.attempt = attempt;
+        this.requested = System.nanoTime();
+        this.firstByte = 0;
+        this.total = -1;
+        this.bytes.set(0);
+        this.received.set(0);
+    }
+
+    /**
+     * The server answered.
+     *
+     * @param offset bytes resumed from a partial file
+     * @param total  file length, -1 if unknown
+     */
+    void start(long offset, long total) {
+        this.bytes.set(offset);
+        this.total = total;
+        if(listener != null) listener.onStart(this);
+    }
+
+    /**
+     * Bytes were received.
+     *
+     * @param read number of bytes
+     */
+    void transferred(int read) {
+        long now = System.nanoTime();
+        if(firstByte == 0) firstByte = now;
+        bytes.addAndGet(read);
+        received.addAndGet(read);
+        UpdaterMetrics.get().onDownloadBytes(url, read);
+
+        long last = notified.get();
+        if(listener != null && now - last >= interval && notified.compareAndSet(last, now)) {
+            listener.onProgress(this);
+        }
+    }
+
+    /**
+     * The file is installed.
+     */
+    void complete(Path file) {
+        if(listener != null) listener.onComplete(this, file);
+    }
+
+    /**
+     * The attempt failed.
+     */
+    void failed(IOException cause, boolean retry) {
+        if(listener != null) listener.onFailure(this, cause, retry);
+    }
+
+    public URL url() {
+        return url;
+    }
+
+    /**
+     * @return attempt number, starting at 1
+     */
+    public int attempt() {
+        return attempt;
+    }
+
+    /**
+     * @return bytes of the file downloaded so far
+     */
+    public long bytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return file length, -1 if unknown
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * @return time to first byte in milliseconds, -1 if nothing was received
+     */
+    public long timeToFirstByte() {
+        long first = firstByte;
+        return first == 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(first - requested);
+    }
+
+    /**
+     * @return throughput since the first byte, in bytes per second
+     */
+    public long throughput() {
+        long first = firstByte;
+        long elapsed = first == 0 ? 0 : System.nanoTime() - first;
+        return elapsed <= 0 ? 0 : (long) (received.get() * 1e9 / elapsed);
+    }
+
+    @Override
+    public String toString() {
+        return url + " " + bytes() + "/" + total() + " bytes, " + throughput() + " B/s, ttfb " + timeToFirstByte() + "ms";
+    }
+}
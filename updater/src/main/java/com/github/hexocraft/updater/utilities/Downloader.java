@@ -19,16 +19,35 @@ package com.github.hexocraft.updater.utilities;
 
 import com.github.hexocraft.updater.Update;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Download update from url
@@ -45,11 +64,109 @@ public class Downloader {
      */
     private final Path folder;
 
+    /**
+     * {@link DownloadListener} notified of the progress, may be null.
+     */
+    private DownloadListener listener;
+
     /**
      * User agent
      */
     static final String USER_AGENT = "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/535.7 (KHTML, like Gecko) Chrome/16.0.912.75 Safari/535.7";
 
+    /**
+     * Number of tries before giving up a download.
+     */
+    static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Delay before the second try in milliseconds, the next ones back off with jitter.
+     */
+    static long RETRY_DELAY = 1000;
+
+    /**
+     * Maximum delay between two tries in milliseconds.
+     */
+    static long MAX_RETRY_DELAY = 10_000;
+
+    /**
+     * Size of the copy buffer.
+     */
+    static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Files larger than this size are downloaded in parallel segments,
+     * if the server accepts range requests.
+     */
+    static long SEGMENTED_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Number of segments downloaded in parallel.
+     */
+    static int SEGMENTS = 4;
+
+    /**
+     * Rate limit shared by every download of the JVM.
+     */
+    private static final RateLimiter rateLimiter = new RateLimiter(0);
+
+    /**
+     * Locks of the partial files being downloaded, removed once no download uses them.
+     */
+    static final Map<Path, PartLock> parts = new ConcurrentHashMap<>();
+
+    /**
+     * Rate limit of a single download in bytes per second, 0 for unlimited.
+     */
+    private static long downloadRateLimit = 0;
+
+    /**
+     * Look for a ".sha256" file next to updates published without digest.
+     * Disabled by default.
+     */
+    private static boolean sidecarChecksum = false;
+
+    /**
+     * Limit the total download rate of the JVM, so updates never starve the server traffic.
+     *
+     * @param bytesPerSecond rate in bytes per second, 0 for unlimited
+     */
+    public static void setRateLimit(long bytesPerSecond) {
+        rateLimiter.setRate(bytesPerSecond);
+    }
+
+    public static long getRateLimit() {
+        return rateLimiter.getRate();
+    }
+
+    /**
+     * Limit the rate of each download.
+     *
+     * @param bytesPerSecond rate in bytes per second, 0 for unlimited
+     */
+    public static void setDownloadRateLimit(long bytesPerSecond) {
+        downloadRateLimit = bytesPerSecond;
+    }
+
+    public static long getDownloadRateLimit() {
+        return downloadRateLimit;
+    }
+
+    /**
+     * Verify updates published without digest against a ".sha256" file next to them.
+     * <p>
+     * Costs one more request per download, only useful if the source publishes such files.
+     *
+     * @param enabled true to look for the ".sha256" file
+     */
+    public static void setSidecarChecksum(boolean enabled) {
+        sidecarChecksum = enabled;
+    }
+
+    public static boolean isSidecarChecksum() {
+        return sidecarChecksum;
+    }
+
     /**
      * Download update
      *
@@ -63,6 +180,20 @@ public class Downloader {
         return downloader.download();
     }
 
+    /**
+     * Download update
+     *
+     * @param update   update to download
+     * @param folder   folder where the update file will be downloaded
+     * @param listener {@link DownloadListener} notified of the progress, may be null
+     * @return true on successful download
+     * @throws IOException If the file cannot be downloaded
+     */
+    static public boolean download(Update update, Path folder, DownloadListener listener) throws IOException {
+        Downloader downloader = new Downloader(update, folder).setListener(listener);
+        return downloader.download();
+    }
+
     /**
      * This class cannot be instantiate.
      * Use static functions below.
@@ -78,6 +209,15 @@ public class Downloader {
         this.folder = folder;
     }
 
+    /**
+     * @param listener {@link DownloadListener} notified of the progress, may be null
+     * @return current instance
+     */
+    public Downloader setListener(DownloadListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
     /**
      * Download update
      *
@@ -88,8 +228,19 @@ public class Downloader {
         // Make sure output directory exist
         makeDir(folder);
 
+        // Expected checksum, given by the channel or by a .sha256 file next to the update if enabled
+        Checksum checksum;
+        try {
+            checksum = Checksum.parse(update.digest());
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        if (checksum == null && sidecarChecksum) {
+            checksum = sidecar(update.downloadUrl());
+        }
+
         // Download update from url
-        return downloadFile(update.downloadUrl(), folder);
+        return downloadFile(update.downloadUrl(), folder, checksum, listener);
     }
 
     /**
@@ -111,6 +262,9 @@ public class Downloader {
 
     /**
      * Download file from url
+     * <p>
+     * The file is downloaded to a partial file, moved to the output folder once complete.
+     * If the transfer fails, the download is resumed from the partial file with a range request.
      *
      * @param url    File url
      * @param output output file
@@ -118,43 +272,543 @@ public class Downloader {
      * @throws IOException If the file cannot be downloaded
      */
     static boolean downloadFile(URL url, Path output) throws IOException {
-        //logger.accept("Downloading file: " + url);
+        return downloadFile(url, output, null);
+    }
 
-        HttpURLConnection connection = HttpConnection.openConnection(url);
-        int status = connection.getResponseCode();
+    /**
+     * Download file from url and verify its checksum
+     * <p>
+     * The digest is computed while the file is downloaded. The file is moved to the output folder
+     * only if it matches the expected checksum.
+     *
+     * @param url      File url
+     * @param output   output file
+     * @param checksum expected checksum, or null to skip verification
+     * @return true on successful download
+     * @throws IOException If the file cannot be downloaded or does not match the checksum
+     */
+    static boolean downloadFile(URL url, Path output, Checksum checksum) throws IOException {
+        return downloadFile(url, output, checksum, null);
+    }
+
+    /**
+     * Download file from url, verify its checksum and report the progress
+     *
+     * @param url      File url
+     * @param output   output file
+     * @param checksum expected checksum, or null to skip verification
+     * @param listener {@link DownloadListener} notified of the progress, may be null
+     * @return true on successful download
+     * @throws IOException If the file cannot be downloaded or does not match the checksum
+     */
+    static boolean downloadFile(URL url, Path output, Checksum checksum, DownloadListener listener) throws IOException {
+        DownloadProgress progress = new DownloadProgress(url, listener);
+        Backoff backoff = new Backoff();
+        long start = System.nanoTime();
 
-        // The file is present in the repository
-        if ((status >= 200 && status < 300) || status == 304) {
-            String disposition = connection.getHeaderField("Content-Disposition");
-            String fileName = "";
-            String fileURL = url.toString();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                progress.request(attempt);
+                boolean downloaded = transfer(url, output, checksum, progress);
+                UpdaterMetrics.get().onDownload(url, System.nanoTime() - start, downloaded ? null : new IOException("File not installed: " + url));
+                return downloaded;
+            } catch (IOException e) {
+                // A rate limited host is not tried again
+                boolean retry = attempt < MAX_ATTEMPTS && !(e instanceof RateLimitedException);
+                progress.failed(e, retry);
+                if (!retry) {
+                    UpdaterMetrics.get().onDownload(url, System.nanoTime() - start, e);
+                    throw e;
+                }
 
-            // extracts file name from header field
-            if (disposition != null) {
-                int index = disposition.indexOf("filename=");
-                if (index > 0)
-                    fileName = disposition.substring(index + 10, disposition.length() - 1);
+                // Give a flapping server time to recover
+                try {
+                    Thread.sleep(backoff.failure(RETRY_DELAY, MAX_RETRY_DELAY));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    UpdaterMetrics.get().onDownload(url, System.nanoTime() - start, e);
+                    throw new InterruptedIOException("Download interrupted");
+                }
             }
+        }
+    }
 
-            // extracts file name from URL
-            if (fileName.isEmpty())
-                fileName = fileURL.substring(fileURL.lastIndexOf("/") + 1);
+    /**
+     * Download or resume the file from url
+     *
+     * @param url      File url
+     * @param output   output file
+     * @param checksum expected checksum, or null to skip verification
+     * @param progress progress of the download
+     * @return true on successful download
+     * @throws IOException If the transfer failed or the server answered with an error status
+     */
+    static boolean transfer(URL url, Path output, Checksum checksum, DownloadProgress progress) throws IOException {
+        Path part = output.resolve(".update-" + Integer.toHexString(url.toString().hashCode()) + ".part");
 
-            // Test if file already exist
-            File outputFile = output.resolve(fileName).toFile();
-            if(outputFile.exists()) {
-                return true;
+        // Updaters sharing a query download the same file at the same time, one at a time per partial file
+        Path key = part.toAbsolutePath().normalize();
+        PartLock lock = parts.compute(key, (path, used) -> {
+            PartLock partLock = used != null ? used : new PartLock();
+            partLock.users++;
+            return partLock;
+        });
+        try {
+            try {
+                lock.lockInterruptibly();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Download interrupted");
+            }
+            try {
+                return transfer(url, output, part, checksum, progress);
             }
+            finally {
+                lock.unlock();
+            }
+        }
+        finally {
+            // The last user forgets the lock
+            parts.computeIfPresent(key, (path, used) -> --used.users > 0 ? used : null);
+        }
+    }
 
-            // Download file
-            ReadableByteChannel readableByteChannel = Channels.newChannel(connection.getInputStream());
-            FileOutputStream fileOutputStream = new FileOutputStream(output.resolve(fileName).toFile());
-            fileOutputStream.getChannel().transferFrom(readableByteChannel, 0, Long.MAX_VALUE);
-            fileOutputStream.close();
+    /**
+     * Download or resume the file from url, the partial file being locked
+     *
+     * @param url      File url
+     * @param output   output file
+     * @param part     partial file
+     * @param checksum expected checksum, or null to skip verification
+     * @param progress progress of the download
+     * @return true on successful download
+     * @throws IOException If the transfer failed or the server answered with an error status
+     */
+    private static boolean transfer(URL url, Path output, Path part, Checksum checksum, DownloadProgress progress) throws IOException {
+        Path partValidator = output.resolve(part.getFileName() + ".validator");
 
-            return Files.exists(output.resolve(fileName));
-        } else {
+        // Resume partial download if the validator of the first response is known
+        long offset = Files.exists(part) ? Files.size(part) : 0;
+        String validator = offset > 0 && Files.exists(partValidator) ? new String(Files.readAllBytes(partValidator), StandardCharsets.UTF_8) : null;
+        Map<String, String> headers = new HashMap<>();
+        if (validator != null) {
+            headers.put("Range", "bytes=" + offset + "-");
+            headers.put("If-Range", validator);
+        }
+
+        // Segments of this download share its rate limit
+        RateLimiter limiter = new RateLimiter(downloadRateLimit);
+
+        HttpURLConnection connection = HttpConnection.openConnection(url, headers);
+        try {
+            int status = connection.getResponseCode();
+
+            // Partial file does not match the file on the server anymore
+            if (status == 416) {
+                Files.deleteIfExists(part);
+                Files.deleteIfExists(partValidator);
+                throw new IOException("Range not satisfiable: " + url);
+            }
+
+            // A partial response not starting at the end of the partial file cannot be appended, the next try starts over
+            if (status == HttpURLConnection.HTTP_PARTIAL && !isRangeFrom(connection.getHeaderField("Content-Range"), offset)) {
+                Files.deleteIfExists(part);
+                Files.deleteIfExists(partValidator);
+                throw new IOException("Unexpected Content-Range " + connection.getHeaderField("Content-Range") + ": " + url);
+            }
+
+            // The file is present in the repository
+            if (status >= 200 && status < 300) {
+                String disposition = connection.getHeaderField("Content-Disposition");
+                String fileName = "";
+                String fileURL = url.toString();
+
+                // extracts file name from header field
+                if (disposition != null) {
+                    int index = disposition.indexOf("filename=");
+                    if (index > 0)
+                        fileName = disposition.substring(index + 10, disposition.length() - 1);
+                }
+
+                // extracts file name from URL
+                if (fileName.isEmpty())
+                    fileName = fileURL.substring(fileURL.lastIndexOf("/") + 1);
+
+                // Test if the file is already downloaded, it is replaced otherwise
+                Path outputFile = output.resolve(fileName);
+                long length = connection.getContentLengthLong();
+                boolean resumed = status == HttpURLConnection.HTTP_PARTIAL;
+                if (isDownloaded(outputFile, checksum, length < 0 ? -1 : resumed ? offset + length : length)) {
+                    Files.deleteIfExists(part);
+                    Files.deleteIfExists(partValidator);
+                    progress.complete(outputFile);
+                    return true;
+                }
+
+                // The server sent the whole file, start from the beginning
+                if (!resumed) {
+                    offset = 0;
+                    String etag = connection.getHeaderField("ETag");
+                    String lastModified = connection.getHeaderField("Last-Modified");
+                    String newValidator = etag != null && !etag.startsWith("W/") ? etag : lastModified;
+                    if (newValidator != null) {
+                        Files.write(partValidator, newValidator.getBytes(StandardCharsets.UTF_8));
+                    } else {
+                        Files.deleteIfExists(partValidator);
+                    }
+                }
+
+                // Download large file in parallel segments
+                progress.start(offset, length >= 0 ? offset + length : -1);
+                String newValidator = Files.exists(partValidator) ? new String(Files.readAllBytes(partValidator), StandardCharsets.UTF_8) : null;
+                if (offset == 0 && status == HttpURLConnection.HTTP_OK && newValidator != null && length >= SEGMENTED_SIZE
+                        && "bytes".equalsIgnoreCase(connection.getHeaderField("Accept-Ranges"))) {
+                    // A failed segment keeps the completed ones, the next attempt resumes in a single stream
+                    connection.disconnect();
+                    segmented(url, part, length, newValidator, limiter, progress);
+
+                    // Segments are written out of order, the digest needs a single read of the file
+                    MessageDigest digest = checksum != null ? checksum.newDigest() : null;
+                    if (digest != null) {
+                        digest(part, length, digest);
+                    }
+                    install(part, partValidator, outputFile, checksum, digest);
+                    progress.complete(outputFile);
+                    return Files.exists(outputFile);
+                }
+
+                // Digest of the bytes already downloaded
+                MessageDigest digest = checksum != null ? checksum.newDigest() : null;
+                if (digest != null && offset > 0) {
+                    digest(part, offset, digest);
+                }
+
+                // Download file
+                long written = copy(connection.getInputStream(), part, offset, digest, limiter, progress);
+                if (length >= 0 && written != length) {
+                    throw new IOException("Incomplete download: " + url);
+                }
+
+                // Move verified file to the output folder
+                install(part, partValidator, outputFile, checksum, digest);
+                progress.complete(outputFile);
+
+                return Files.exists(outputFile);
+            } else {
+                throw new IOException("Download failed with HTTP " + status + ": " + url);
+            }
+        }
+        finally {
+            HttpConnection.close(connection);
+        }
+    }
+
+    /**
+     * Test if a file is already downloaded.
+     * <p>
+     * The file is verified against the checksum if known, against the size of the file on the server otherwise.
+     *
+     * @param file     output file
+     * @param checksum expected checksum, or null if unknown
+     * @param size     size of the file on the server, or -1 if unknown
+     * @return true if the file exists and matches
+     * @throws IOException If the file cannot be read
+     */
+    static boolean isDownloaded(Path file, Checksum checksum, long size) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        if (checksum != null) {
+            MessageDigest digest = checksum.newDigest();
+            digest(file, Files.size(file), digest);
+            return checksum.matches(digest.digest());
+        }
+        return size < 0 || Files.size(file) == size;
+    }
+
+    /**
+     * Verify the downloaded file and move it to its final place.
+     * <p>
+     * The file is moved atomically when the file system allows it, so the output file is never seen half written.
+     *
+     * @param part          partial file
+     * @param partValidator validator of the partial file
+     * @param outputFile    final file
+     * @param checksum      expected checksum, or null to skip verification
+     * @param digest        computed digest
+     * @throws IOException If the file does not match the checksum or cannot be moved
+     */
+    static void install(Path part, Path partValidator, Path outputFile, Checksum checksum, MessageDigest digest) throws IOException {
+        if (checksum != null && !checksum.matches(digest.digest())) {
+            Files.deleteIfExists(part);
+            Files.deleteIfExists(partValidator);
+            throw new IOException("Checksum mismatch: " + outputFile.getFileName());
+        }
+
+        try {
+            Files.move(part, outputFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part, outputFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.deleteIfExists(partValidator);
+    }
+
+    /**
+     * Read the checksum published next to a file, as url + ".sha256"
+     *
+     * @param url File url
+     * @return {@link Checksum} or null if not published
+     */
+    static Checksum sidecar(URL url) {
+        HttpURLConnection connection = null;
+        try {
+            connection = HttpConnection.openConnection(new URL(url.toString() + ".sha256"));
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                return null;
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                String line = reader.readLine();
+                String[] values = line != null ? line.trim().split("\\s+") : new String[0];
+                return values.length > 0 && values[0].length() == 64 ? Checksum.parse("sha256:" + values[0]) : null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        finally {
+            HttpConnection.close(connection);
+        }
+    }
+
+    /**
+     * Add the first bytes of a file to a digest
+     *
+     * @param file   file to read
+     * @param length number of bytes to read
+     * @param digest digest to update
+     * @throws IOException If the file cannot be read
+     */
+    static void digest(Path file, long length, MessageDigest digest) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream input = Files.newInputStream(file)) {
+            long remaining = length;
+            int read;
+            while (remaining > 0 && (read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                digest.update(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    /**
+     * Copy the response to the partial file
+     *
+     * @param input    response stream
+     * @param part     partial file
+     * @param offset   position where to start writing, the file is truncated to it
+     * @param digest   digest updated with the copied bytes, may be null
+     * @param limiter  rate limit of this download
+     * @param progress progress of the download
+     * @return number of bytes written
+     * @throws IOException If the transfer failed
+     */
+    static long copy(InputStream input, Path part, long offset, MessageDigest digest, RateLimiter limiter, DownloadProgress progress) throws IOException {
+        long written = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int chunk = chunkSize(limiter);
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(offset);
+            channel.position(offset);
+            int read;
+            while ((read = input.read(buffer, 0, chunk)) != -1) {
+                throttle(limiter, read);
+                if (digest != null) {
+                    digest.update(buffer, 0, read);
+                }
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                written += read;
+                progress.transferred(read);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Download the file in parallel segments.
+     * <p>
+     * Segments are fetched with range requests by the shared download executor and by the calling thread,
+     * and written at their offset in the partial file. The calling thread never waits for a segment
+     * that no thread has started.
+     * <p>
+     * If a segment fails, the partial file is truncated to the bytes downloaded without gap from its start,
+     * so the download can be resumed with a single range request.
+     *
+     * @param url       File url
+     * @param part      partial file
+     * @param length    file length
+     * @param validator validator of the file, sent as If-Range
+     * @param limiter   rate limit of this download
+     * @param progress  progress of the download
+     * @throws IOException If a segment cannot be downloaded
+     */
+    static void segmented(URL url, Path part, long length, String validator, RateLimiter limiter, DownloadProgress progress) throws IOException {
+        int count = (int) Math.min(SEGMENTS, Math.max(1, length / (SEGMENTED_SIZE / SEGMENTS)));
+        long size = (length + count - 1) / count;
+
+        Queue<long[]> segments = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        List<AtomicLong> reached = new ArrayList<>();
+        for (long start = 0; start < length; start += size) {
+            segments.add(new long[]{start, Math.min(start + size, length) - 1, done.size()});
+            done.add(new CompletableFuture<>());
+            reached.add(new AtomicLong(start));
+        }
+
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            AtomicBoolean failed = new AtomicBoolean();
+            Runnable worker = () -> {
+                long[] segment;
+                while ((segment = segments.poll()) != null) {
+                    CompletableFuture<Void> future = done.get((int) segment[2]);
+                    if (failed.get()) {
+                        future.completeExceptionally(new IOException("Download cancelled: " + url));
+                        continue;
+                    }
+                    try {
+                        segment(url, channel, segment[0], segment[1], validator, limiter, progress, reached.get((int) segment[2]));
+                        future.complete(null);
+                    } catch (Throwable e) {
+                        failed.set(true);
+                        future.completeExceptionally(e);
+                    }
+                }
+            };
+
+            // Helpers, and the calling thread
+            for (int i = 1; i < count; i++) {
+                Scheduler.download().execute(worker);
+            }
+            worker.run();
+
+            try {
+                CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException e) {
+                // Keep the bytes downloaded without gap
+                long complete = 0;
+                for (int i = 0; i < reached.size() && complete == i * size; i++) {
+                    complete = reached.get(i).get();
+                }
+                channel.truncate(complete);
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Download a segment of the file
+     *
+     * @param url       File url
+     * @param channel   partial file
+     * @param start     first byte of the segment
+     * @param end       last byte of the segment
+     * @param validator validator of the file, sent as If-Range
+     * @param limiter   rate limit of this download
+     * @param progress  progress of the download
+     * @param reached   position reached in the segment, updated as the bytes are written
+     * @throws IOException If the segment cannot be downloaded
+     */
+    static void segment(URL url, FileChannel channel, long start, long end, String validator, RateLimiter limiter, DownloadProgress progress, AtomicLong reached) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Range", "bytes=" + start + "-" + end);
+        headers.put("If-Range", validator);
+
+        HttpURLConnection connection = HttpConnection.openConnection(url, headers);
+        try {
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL || !isRangeFrom(connection.getHeaderField("Content-Range"), start)) {
+                throw new IOException("Range not honored: " + url);
+            }
+
+            long position = start;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int chunk = chunkSize(limiter);
+            InputStream input = connection.getInputStream();
+            int read;
+            while (position <= end && (read = input.read(buffer, 0, (int) Math.min(chunk, end + 1 - position))) != -1) {
+                throttle(limiter, read);
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                while (bytes.hasRemaining()) {
+                    position += channel.write(bytes, position);
+                }
+                reached.set(position);
+                progress.transferred(read);
+            }
+            if (position != end + 1) {
+                throw new IOException("Incomplete segment: " + url);
+            }
+        }
+        finally {
+            HttpConnection.close(connection);
+        }
+    }
+
+    /**
+     * Wait until the global and download rate limits allow the bytes just read
+     *
+     * @param limiter rate limit of the download
+     * @param bytes   number of bytes read
+     * @throws IOException If the thread is interrupted
+     */
+    static void throttle(RateLimiter limiter, int bytes) throws IOException {
+        rateLimiter.acquire(bytes);
+        limiter.acquire(bytes);
+    }
+
+    /**
+     * Size of the reads, small enough to spread a limited download over time (about 50ms of data)
+     *
+     * @param limiter rate limit of the download
+     * @return number of bytes to read at once
+     */
+    static int chunkSize(RateLimiter limiter) {
+        long global = rateLimiter.getRate();
+        long local = limiter.getRate();
+        long rate = global <= 0 ? local : local <= 0 ? global : Math.min(global, local);
+        return rate <= 0 ? BUFFER_SIZE : (int) Math.max(1024, Math.min(BUFFER_SIZE, rate / 20));
+    }
+
+    /**
+     * Test if a Content-Range header starts at the given offset
+     *
+     * @param contentRange Content-Range header, as "bytes start-end/total"
+     * @param offset       expected start
+     * @return true if the range starts at offset
+     */
+    static boolean isRangeFrom(String contentRange, long offset) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return false;
+        }
+        int dash = contentRange.indexOf('-');
+        if (dash < 0) {
             return false;
         }
+        try {
+            return Long.parseLong(contentRange.substring(6, dash).trim()) == offset;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * Lock of a partial file, with the number of downloads using it.
+     * The count is only changed while the map entry is computed.
+     */
+    static final class PartLock extends ReentrantLock {
+
+        private static final long serialVersionUID = 1L;
+
+        private int users;
     }
 }
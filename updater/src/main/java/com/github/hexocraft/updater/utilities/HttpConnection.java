@@ -18,14 +18,32 @@
 package com.github.hexocraft.updater.utilities;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.*;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Create connections shared by channels and downloader.
+ * <p>
+ * Connections are pooled by the JVM keep-alive cache. A connection goes back to the pool
+ * once its response stream is closed, so every connection must be released with {@link #close(HttpURLConnection)}.
+ */
 public class HttpConnection {
 
     //
     private static Proxy proxy;
 
+    /**
+     * Connect timeout in milliseconds.
+     */
+    private static int connectTimeout = 2000;
+
+    /**
+     * Read timeout in milliseconds.
+     */
+    private static int readTimeout = 2500;
+
 
     /**
      * This class cannot be instantiate.
@@ -34,6 +52,28 @@ public class HttpConnection {
     private HttpConnection() {
     }
 
+    /**
+     * @param timeout connect timeout in milliseconds
+     */
+    public static void setConnectTimeout(int timeout) {
+        connectTimeout = timeout;
+    }
+
+    public static int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * @param timeout read timeout in milliseconds
+     */
+    public static void setReadTimeout(int timeout) {
+        readTimeout = timeout;
+    }
+
+    public static int getReadTimeout() {
+        return readTimeout;
+    }
+
     /*
      * Get the proxy used by the JVM
      */
@@ -71,21 +111,49 @@ public class HttpConnection {
         return Open(Connection(url));
     }
 
+    /**
+     * Open an {@link HttpURLConnection} based on {@link URL}, sending the given headers to every redirect hop
+     * @param url {@link URL} to open
+     * @param headers request headers
+     * @return {@link HttpURLConnection}
+     * @throws IOException if an I/O exception occurs.
+     */
+    public static HttpURLConnection openConnection(URL url, Map<String, String> headers) throws IOException
+    {
+        HttpURLConnection connection = Connection(url);
+        headers.forEach(connection::setRequestProperty);
+        int status = responseCode(connection);
+        boolean redirect = status == HttpURLConnection.HTTP_MOVED_TEMP || status == HttpURLConnection.HTTP_MOVED_PERM || status == HttpURLConnection.HTTP_SEE_OTHER;
+
+        if (redirect) {
+            String newUrl = connection.getHeaderField("Location");
+            close(connection);
+            return openConnection(new URL(connection.getURL(), newUrl), headers);
+        }
+
+        return connection;
+    }
+
     /**
      * Create a {@link HttpURLConnection} based on {@link URL}
      * @param url {@link URL} to connect
      * @return {@link HttpURLConnection}
+     * @throws RateLimitedException if the request budget of the host is exhausted.
      * @throws IOException if an I/O exception occurs.
      */
     public static HttpURLConnection Connection(URL url) throws IOException
     {
+        long retryAt = RateLimits.acquire(url);
+        if (retryAt > 0) {
+            throw new RateLimitedException(url, retryAt);
+        }
+
         Proxy proxy = getProxy();
         final HttpURLConnection connection = (HttpURLConnection) (proxy != null ? url.openConnection(proxy) : url.openConnection());
         connection.setRequestProperty("User-Agent", Downloader.USER_AGENT);
         connection.setInstanceFollowRedirects(true);
-        connection.setDoOutput(true);
-        connection.setConnectTimeout(2000);
-        connection.setReadTimeout(2500);
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
 
         return connection;
     }
@@ -99,14 +167,89 @@ public class HttpConnection {
      */
     public static HttpURLConnection Open(HttpURLConnection connection) throws IOException
     {
-        int status = connection.getResponseCode();
+        int status = responseCode(connection);
         boolean redirect = status == HttpURLConnection.HTTP_MOVED_TEMP || status == HttpURLConnection.HTTP_MOVED_PERM || status == HttpURLConnection.HTTP_SEE_OTHER;
 
         if (redirect) {
             String newUrl = connection.getHeaderField("Location");
-            return Open(Connection(new URL(newUrl)));
+            close(connection);
+            return Open(Connection(new URL(connection.getURL(), newUrl)));
         }
 
         return connection;
     }
+
+    /**
+     * Send the request and wait for the response status.
+     * <p>
+     * The request is reported to {@link UpdaterMetrics}, and its rate limit headers to {@link RateLimits}.
+     *
+     * @param connection {@link HttpURLConnection} to send
+     * @return HTTP status
+     * @throws RateLimitedException if the host refused the request.
+     * @throws IOException if an error occurred connecting to the server.
+     */
+    public static int responseCode(HttpURLConnection connection) throws IOException
+    {
+        Metrics metrics = UpdaterMetrics.get();
+        URL url = connection.getURL();
+        int status = -1;
+        long start = System.nanoTime();
+        metrics.onRequestStart(url);
+        try {
+            status = connection.getResponseCode();
+        }
+        finally {
+            metrics.onRequestEnd(url, status, System.nanoTime() - start);
+        }
+
+        long retryAt = RateLimits.update(connection, status);
+        if (retryAt > 0) {
+            throw new RateLimitedException(url, retryAt);
+        }
+        return status;
+    }
+
+    /**
+     * Read the next page of a paginated response from its Link header
+     * @param connection {@link HttpURLConnection} holding the response
+     * @return {@link URL} of the next page, or null on the last page
+     * @throws IOException if the next page url is malformed.
+     */
+    public static URL nextPage(HttpURLConnection connection) throws IOException
+    {
+        String link = connection.getHeaderField("Link");
+        if (link == null) {
+            return null;
+        }
+        for (String part : link.split(",")) {
+            int start = part.indexOf('<');
+            int end = part.indexOf('>', start + 1);
+            if (start >= 0 && end > start && part.substring(end).matches(".*;\\s*rel=\"?next\"?.*")) {
+                return new URL(connection.getURL(), part.substring(start + 1, end));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Release an {@link HttpURLConnection}.
+     * <p>
+     * The response stream is closed so the underlying socket can be reused by the next request to the same host.
+     * The connection itself is not disconnected.
+     *
+     * @param connection {@link HttpURLConnection} to release, may be null
+     */
+    public static void close(HttpURLConnection connection)
+    {
+        if (connection == null) {
+            return;
+        }
+        try {
+            InputStream stream = connection.getResponseCode() >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            if (stream != null) stream.close();
+        }
+        catch (IOException ignored) {
+        }
+    }
 }
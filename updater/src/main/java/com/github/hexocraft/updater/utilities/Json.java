@@ -0,0 +1,141 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Helpers used to read json responses token by token.
+ */
+public class Json {
+
+    /**
+     * This class cannot be instantiate.
+     * Use static functions below.
+     */
+    private Json() {
+    }
+
+    /**
+     * Test if the document is empty
+     *
+     * @param reader {@link JsonReader} positioned at the beginning of the document
+     * @return true if the document has no content
+     * @throws IOException if the document cannot be read
+     */
+    public static boolean isEmpty(JsonReader reader) throws IOException {
+        try {
+            return reader.peek() == JsonToken.END_DOCUMENT;
+        }
+        catch(EOFException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Read a string value, which may be null
+     *
+     * @param reader {@link JsonReader}
+     * @return string value or null
+     * @throws IOException if the value cannot be read
+     */
+    public static String nextString(JsonReader reader) throws IOException {
+        if(reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * Read a boolean value, null being read as false
+     *
+     * @param reader {@link JsonReader}
+     * @return boolean value
+     * @throws IOException if the value cannot be read
+     */
+    public static boolean nextBoolean(JsonReader reader) throws IOException {
+        if(reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return false;
+        }
+        return reader.nextBoolean();
+    }
+
+    /**
+     * Read an ISO-8601 date, such as "2020-01-31T12:00:00Z"
+     *
+     * @param reader {@link JsonReader}
+     * @return date in epoch milliseconds, 0 if null or invalid
+     * @throws IOException if the value cannot be read
+     */
+    public static long nextDate(JsonReader reader) throws IOException {
+        String value = nextString(reader);
+        try {
+            return value != null ? Instant.parse(value).toEpochMilli() : 0;
+        }
+        catch(DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Read a date given in epoch seconds
+     *
+     * @param reader {@link JsonReader}
+     * @return date in epoch milliseconds, 0 if null or invalid
+     * @throws IOException if the value cannot be read
+     */
+    public static long nextSeconds(JsonReader reader) throws IOException {
+        String value = nextString(reader);
+        try {
+            return value != null ? TimeUnit.SECONDS.toMillis(Long.parseLong(value)) : 0;
+        }
+        catch(NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Read a field of the current object and skip the others
+     *
+     * @param reader {@link JsonReader} inside an object
+     * @param field  name of the field to read
+     * @return string value or null if the field is missing
+     * @throws IOException if the object cannot be read
+     */
+    public static String findString(JsonReader reader, String field) throws IOException {
+        String value = null;
+        while(reader.hasNext()) {
+            if(reader.nextName().equals(field)) {
+                value = nextString(reader);
+            }
+            else {
+                reader.skipValue();
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import com.github.hexocraft.updater.enumeration.Result;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Receiver of the update checks, HTTP requests and downloads measures.
+ * <p>
+ * Install an implementation with {@link UpdaterMetrics#set(Metrics)} to forward the measures to a monitoring system.
+ * Methods are called from the network threads, they should return quickly.
+ */
+public interface Metrics {
+
+    /**
+     * The channel of an update check was read, the download of the update is reported by {@link #onDownload}.
+     *
+     * @param channel channel type (ex: GithubChannel)
+     * @param result  {@link Result} of the read
+     * @param nanos   duration of the read in nanoseconds
+     */
+    default void onCheck(String channel, Result result, long nanos) {
+    }
+
+    /**
+     * An HTTP request is sent.
+     *
+     * @param url requested url
+     */
+    default void onRequestStart(URL url) {
+    }
+
+    /**
+     * An HTTP response was received.
+     *
+     * @param url    requested url
+     * @param status HTTP status, -1 if no response was received
+     * @param nanos  time until the response headers in nanoseconds
+     */
+    default void onRequestEnd(URL url, int status, long nanos) {
+    }
+
+    /**
+     * Bytes of a download were received.
+     *
+     * @param url   downloaded url
+     * @param bytes number of bytes
+     */
+    default void onDownloadBytes(URL url, int bytes) {
+    }
+
+    /**
+     * A download finished.
+     *
+     * @param url   downloaded url
+     * @param nanos duration of the download, retries included, in nanoseconds
+     * @param error cause of the failure, null on success
+     */
+    default void onDownload(URL url, long nanos, IOException error) {
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import java.io.IOException;
+import java.net.URL;
+import java.time.Instant;
+
+/**
+ * The host refused the request, or its request budget is exhausted and the request was not sent.
+ */
+public class RateLimitedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Time from which the host accepts requests again, in epoch milliseconds.
+     */
+    private final long retryAt;
+
+
+    public RateLimitedException(URL url, long retryAt) {
+        super("Rate limited by " + url.getHost() + " until " + Instant.ofEpochMilli(retryAt));
+        this.retryAt = retryAt;
+    }
+
+    /**
+     * @return time from which the host accepts requests again, in epoch milliseconds
+     */
+    public long retryAt() {
+        return retryAt;
+    }
+}
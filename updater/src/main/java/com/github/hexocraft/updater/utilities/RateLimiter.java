@@ -0,0 +1,100 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting a transfer rate in bytes per second.
+ * <p>
+ * The bucket holds at most one second of tokens. A caller may take more tokens than available,
+ * it then waits until the debt is paid back, and so do the callers behind it.
+ * <p>
+ * The callers sleep while waiting: updaters run their downloads on {@link Scheduler#download()},
+ * never on the network threads of {@link Scheduler#io()}.
+ */
+public class RateLimiter {
+
+    /**
+     * Rate in bytes per second, 0 or less for unlimited.
+     */
+    private volatile long rate;
+
+    /**
+     * Available tokens, negative when callers are waiting.
+     */
+    private double available;
+
+    /**
+     * Last refill time in nanoseconds.
+     */
+    private long last = System.nanoTime();
+
+
+    /**
+     * @param rate rate in bytes per second, 0 or less for unlimited
+     */
+    public RateLimiter(long rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * @param rate rate in bytes per second, 0 or less for unlimited
+     */
+    public void setRate(long rate) {
+        this.rate = rate;
+    }
+
+    public long getRate() {
+        return rate;
+    }
+
+    /**
+     * Take tokens, waiting if the rate is exceeded
+     *
+     * @param bytes number of bytes about to be transferred
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    public void acquire(int bytes) throws InterruptedIOException {
+        long wait;
+        synchronized(this) {
+            long rate = this.rate;
+            long now = System.nanoTime();
+            if(rate <= 0) {
+                available = 0;
+                last = now;
+                return;
+            }
+            available = Math.min(rate, available + (now - last) * rate / 1e9);
+            last = now;
+            available -= bytes;
+            wait = available < 0 ? (long) (-available * 1e9 / rate) : 0;
+        }
+
+        if(wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Download interrupted");
+            }
+        }
+    }
+}
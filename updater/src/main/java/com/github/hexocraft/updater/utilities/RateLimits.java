@@ -0,0 +1,232 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request budget of each host, read from the rate limit headers of its responses.
+ * <p>
+ * GitHub reports the remaining requests in {@code X-RateLimit-Remaining} until {@code X-RateLimit-Reset},
+ * and most APIs send {@code Retry-After} with their 429 and 503 responses.
+ * Requests are not sent while the host refuses them, and are spread until the reset once the budget runs low.
+ * The budget is shared by every server behind the same address, so the last requests are not spent at once.
+ * <p>
+ * A host sending {@code X-RateLimit-Resource} has a budget per resource, as GitHub counts its REST ("core")
+ * and GraphQL requests apart. The resource of a request is the one last reported for its first path segment.
+ */
+public class RateLimits {
+
+    /**
+     * Wait applied to a 429 response without any header telling when to retry, in milliseconds.
+     */
+    static long defaultRetry = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Budgets by host, or by host and resource.
+     */
+    private static final Map<String, Budget> budgets = new HashMap<>();
+
+    /**
+     * Resources reported by host and first path segment.
+     */
+    private static final Map<String, String> resources = new HashMap<>();
+
+
+    /**
+     * This class cannot be instantiate.
+     * Use static functions below.
+     */
+    private RateLimits() {
+    }
+
+    /**
+     * Take a request from the budget of the host
+     *
+     * @param url {@link URL} about to be requested
+     * @return time from which the request may be sent in epoch milliseconds, 0 if it may be sent now
+     */
+    public static long acquire(URL url) {
+        Budget budget;
+        synchronized(budgets) {
+            budget = budgets.get(key(url, resources.get(path(url))));
+        }
+        return budget != null ? budget.acquire(System.currentTimeMillis()) : 0;
+    }
+
+    /**
+     * Update the budget of the host from the response headers
+     *
+     * @param connection {@link HttpURLConnection} holding the response
+     * @param status     HTTP status of the response
+     * @return time from which the host accepts requests again in epoch milliseconds, 0 if the request was not refused
+     */
+    public static long update(HttpURLConnection connection, int status) {
+        long now = System.currentTimeMillis();
+        long limit = parseLong(connection.getHeaderField("X-RateLimit-Limit"));
+        long remaining = parseLong(connection.getHeaderField("X-RateLimit-Remaining"));
+        long reset = parseLong(connection.getHeaderField("X-RateLimit-Reset"));
+        reset = reset > 0 ? TimeUnit.SECONDS.toMillis(reset) : 0;
+        String resource = connection.getHeaderField("X-RateLimit-Resource");
+
+        // Refused request
+        long retryAt = 0;
+        if(status == 429 || status == HttpURLConnection.HTTP_FORBIDDEN || status == HttpURLConnection.HTTP_UNAVAILABLE) {
+            retryAt = retryAfter(connection, now);
+            if(retryAt == 0 && remaining == 0 && reset > now) retryAt = reset;
+            if(retryAt == 0 && status == 429) retryAt = now + defaultRetry;
+        }
+
+        // Nothing known about the host
+        if(remaining < 0 && retryAt == 0) {
+            return 0;
+        }
+
+        URL url = connection.getURL();
+        Budget budget;
+        synchronized(budgets) {
+            if(resource != null) resources.put(path(url), resource);
+            budget = budgets.computeIfAbsent(key(url, resource), key -> new Budget());
+        }
+        budget.update(now, limit, remaining, reset, retryAt);
+        return retryAt;
+    }
+
+    /**
+     * Forget every budget
+     */
+    public static void clear() {
+        synchronized(budgets) {
+            budgets.clear();
+            resources.clear();
+        }
+    }
+
+    /**
+     * @return key of the budget of a host and resource
+     */
+    private static String key(URL url, String resource) {
+        return resource != null ? url.getAuthority() + " " + resource : url.getAuthority();
+    }
+
+    /**
+     * @return host and first path segment of the url, ex: api.github.com/graphql
+     */
+    private static String path(URL url) {
+        String path = url.getPath();
+        int end = path.indexOf('/', 1);
+        return url.getAuthority() + (end > 0 ? path.substring(0, end) : path);
+    }
+
+    /**
+     * Read the Retry-After header, given in seconds or as an HTTP date
+     *
+     * @return time to retry in epoch milliseconds, 0 if absent
+     */
+    private static long retryAfter(HttpURLConnection connection, long now) {
+        String value = connection.getHeaderField("Retry-After");
+        if(value == null) {
+            return 0;
+        }
+        long seconds = parseLong(value.trim());
+        return seconds >= 0 ? now + TimeUnit.SECONDS.toMillis(seconds) : Math.max(connection.getHeaderFieldDate("Retry-After", 0), 0);
+    }
+
+    /**
+     * @return value of the header, -1 if absent or not a number
+     */
+    private static long parseLong(String value) {
+        try {
+            return value != null ? Long.parseLong(value) : -1;
+        }
+        catch(NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Request budget of a host.
+     */
+    private static class Budget {
+
+        /**
+         * Requests allowed per window, -1 if unknown.
+         */
+        private long limit = -1;
+
+        /**
+         * Requests left until the reset, -1 if unknown.
+         */
+        private long remaining = -1;
+
+        /**
+         * End of the window in epoch milliseconds.
+         */
+        private long reset;
+
+        /**
+         * Requests refused until this time in epoch milliseconds.
+         */
+        private long retryAt;
+
+        /**
+         * Earliest time of the next request when the budget is low, in epoch milliseconds.
+         */
+        private long next;
+
+        synchronized void update(long now, long limit, long remaining, long reset, long retryAt) {
+            if(limit >= 0) this.limit = limit;
+            if(remaining >= 0) {
+                this.remaining = remaining;
+                this.reset = reset;
+            }
+            if(retryAt > now) this.retryAt = retryAt;
+        }
+
+        synchronized long acquire(long now) {
+            if(retryAt > now) {
+                return retryAt;
+            }
+
+            // A new window started
+            if(remaining < 0 || reset <= now) {
+                remaining = -1;
+                return 0;
+            }
+
+            // Budget exhausted, wait for the reset
+            if(remaining == 0) {
+                return reset;
+            }
+
+            // Budget low, spread the remaining requests until the reset
+            if(remaining <= Math.max(limit / 10, 1)) {
+                if(next > now) {
+                    return next;
+                }
+                next = now + (reset - now) / remaining;
+            }
+            remaining--;
+            return 0;
+        }
+    }
+}
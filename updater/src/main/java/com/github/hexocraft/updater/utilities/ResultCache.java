@@ -0,0 +1,294 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import com.github.hexocraft.updater.Update;
+import com.github.hexocraft.updater.Version;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Persistent cache of channel results.
+ * <p>
+ * Results are stored in a json file so they survive server restarts.
+ * A result younger than the time to live is used without any network request.
+ * <p>
+ * The file may be shared by several caches, even from other plugins: it is read again
+ * and merged under a file lock before being written, the newest entry of each key wins.
+ */
+public class ResultCache {
+
+    /**
+     * Gson instance used to read and write the cache file.
+     */
+    private static final Gson gson = new Gson();
+
+    /**
+     * Type of the cache file content.
+     */
+    private static final Type type = new TypeToken<Map<String, Entry>>() {}.getType();
+
+    /**
+     * Maximum time to wait for the cache file lock held by another cache of this JVM.
+     */
+    private static final long LOCK_TIMEOUT = 5000;
+
+    /**
+     * Cache file.
+     */
+    private final Path file;
+
+    /**
+     * Time to live of a result in milliseconds.
+     */
+    private final long ttl;
+
+    /**
+     * Cached entries, loaded on first use.
+     */
+    private Map<String, Entry> entries;
+
+
+    /**
+     * @param file cache file
+     * @param ttl  time to live of a result in milliseconds
+     */
+    public ResultCache(Path file, long ttl) {
+        this.file = Objects.requireNonNull(file, "file cannot be null");
+        this.ttl = ttl;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public long ttl() {
+        return ttl;
+    }
+
+    /**
+     * Get a cached result
+     *
+     * @param key channel key
+     * @return {@link Entry} or null if nothing is cached
+     */
+    public synchronized Entry get(String key) {
+        return load().get(key);
+    }
+
+    /**
+     * Test if a cached result is still valid
+     *
+     * @param entry cached {@link Entry}
+     * @return true if the entry is younger than the time to live
+     */
+    public boolean isFresh(Entry entry) {
+        return entry != null && System.currentTimeMillis() - entry.timestamp < ttl;
+    }
+
+    /**
+     * Store a result and write the cache file
+     *
+     * @param key        channel key
+     * @param update     parsed {@link Update}
+     * @param validators validators of the responses, by url
+     */
+    public synchronized void put(String key, Update update, Map<String, Validator> validators) {
+        load().put(key, new Entry(update, validators, System.currentTimeMillis()));
+        save();
+    }
+
+    /**
+     * Read the cache file if not already done.
+     */
+    private Map<String, Entry> load() {
+        if(entries == null) {
+            entries = read();
+        }
+        return entries;
+    }
+
+    /**
+     * Read the cache file.
+     * An unreadable file is considered as empty.
+     */
+    private Map<String, Entry> read() {
+        Map<String, Entry> entries = new HashMap<>();
+        if(Files.exists(file)) {
+            try(Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                Map<String, Entry> read = gson.fromJson(reader, type);
+                if(read != null) entries.putAll(read);
+            }
+            catch(Exception ignored) {
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Write the cache file.
+     * <p>
+     * The entries written by other caches since the file was read are merged first.
+     * Entries older than the time to live are not written, they stay in memory until the server stops.
+     * The file is written to a temporary file then moved atomically, so a crash never leaves a truncated cache.
+     */
+    private void save() {
+        try {
+            Path folder = file.toAbsolutePath().getParent();
+            if(folder != null) Files.createDirectories(folder);
+
+            Path lockFile = file.resolveSibling(file.getFileName() + ".lock");
+            try(FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock lock = lock(channel);
+                try {
+                    // Keep the newest entry of each key
+                    read().forEach((key, entry) -> entries.merge(key, entry, (mine, theirs) -> theirs.timestamp > mine.timestamp ? theirs : mine));
+
+                    // Drop the expired entries, so the file does not grow with the channels no longer used
+                    long now = System.currentTimeMillis();
+                    Map<String, Entry> written = new HashMap<>();
+                    entries.forEach((key, entry) -> {
+                        if(now - entry.timestamp < ttl) written.put(key, entry);
+                    });
+
+                    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                    try(Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                        gson.toJson(written, type, writer);
+                    }
+                    try {
+                        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    catch(AtomicMoveNotSupportedException e) {
+                        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                finally {
+                    lock.release();
+                }
+            }
+        }
+        catch(IOException ignored) {
+        }
+    }
+
+    /**
+     * Lock the cache file against the other caches of this JVM and the other processes
+     *
+     * @param channel lock file
+     * @return acquired {@link FileLock}
+     * @throws IOException If the lock cannot be acquired
+     */
+    private static FileLock lock(FileChannel channel) throws IOException {
+        long deadline = System.currentTimeMillis() + LOCK_TIMEOUT;
+        while(true) {
+            try {
+                return channel.lock();
+            }
+            catch(OverlappingFileLockException e) {
+                // Held by another cache of this JVM
+                if(System.currentTimeMillis() > deadline) {
+                    throw new IOException("Cache file locked", e);
+                }
+                try {
+                    Thread.sleep(10);
+                }
+                catch(InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Cache file lock interrupted");
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Cached result of a channel.
+     */
+    public static class Entry {
+
+        private String title;
+        private String version;
+        private String downloadUrl;
+        private String description;
+        private String digest;
+        private long released;
+        private Map<String, Validator> validators;
+        private long timestamp;
+
+        Entry(Update update, Map<String, Validator> validators, long timestamp) {
+            Version version = update.version();
+            this.title = update.title();
+            this.version = version == null ? null : version.toString()
+                    + (version.getPreRelease() != null ? "-" + version.getPreRelease() : "")
+                    + (version.getBuild() != null ? "+" + version.getBuild() : "");
+            this.downloadUrl = update.downloadUrl() == null ? null : update.downloadUrl().toString();
+            this.description = update.description();
+            this.digest = update.digest();
+            this.released = update.released();
+            this.validators = validators;
+            this.timestamp = timestamp;
+        }
+
+        /**
+         * @return cached {@link Update} or null if it cannot be restored
+         */
+        public Update update() {
+            try {
+                Version version = this.version == null ? null : Version.parse(this.version);
+                if(version == null) return null;
+                Update update = new Update(title, version, downloadUrl == null ? null : new URL(downloadUrl), description);
+                update.setDigest(digest);
+                update.setReleased(released);
+                return update;
+            }
+            catch(IOException e) {
+                return null;
+            }
+        }
+
+        /**
+         * @return validators of the responses, by url
+         */
+        public Map<String, Validator> validators() {
+            return validators != null ? validators : new HashMap<>();
+        }
+
+        public long timestamp() {
+            return timestamp;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * JVM-wide scheduler shared by every updater.
+ * <p>
+ * A small fixed pool of daemon threads is used whatever the number of registered updaters.
+ */
+public class Scheduler {
+
+    /**
+     * Number of threads used by the scheduler.
+     */
+    static final int POOL_SIZE = 2;
+
+    /**
+     * Logger of the failed tasks.
+     */
+    private static final Logger logger = Logger.getLogger(Scheduler.class.getName());
+
+    /**
+     * Maximum number of threads used for network requests.
+     */
+    static final int IO_POOL_SIZE = 4;
+
+    /**
+     * Maximum number of threads used for downloads.
+     */
+    static final int DOWNLOAD_POOL_SIZE = 4;
+
+    /**
+     * Shared executor, created on first use.
+     */
+    private static ScheduledThreadPoolExecutor executor;
+
+    /**
+     * Shared executor used for network requests, created on first use.
+     */
+    private static ThreadPoolExecutor io;
+
+    /**
+     * Shared executor used for downloads, created on first use.
+     */
+    private static ThreadPoolExecutor download;
+
+
+    /**
+     * This class cannot be instantiate.
+     * Use static functions below.
+     */
+    private Scheduler() {
+    }
+
+    /**
+     * @return the shared {@link ScheduledExecutorService}
+     */
+    public static synchronized ScheduledExecutorService get() {
+        if(executor == null || executor.isShutdown()) {
+            executor = new ScheduledThreadPoolExecutor(POOL_SIZE, daemonThreadFactory("updater-scheduler"));
+            executor.setRemoveOnCancelPolicy(true);
+            executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        }
+        return executor;
+    }
+
+    /**
+     * Executor used to run network requests.
+     * <p>
+     * Requests are queued once every thread is busy, idle threads are released.
+     *
+     * @return the shared network {@link ExecutorService}
+     */
+    public static synchronized ExecutorService io() {
+        if(io == null || io.isShutdown()) {
+            io = new ThreadPoolExecutor(IO_POOL_SIZE, IO_POOL_SIZE, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), daemonThreadFactory("updater-io"));
+            io.allowCoreThreadTimeOut(true);
+        }
+        return io;
+    }
+
+    /**
+     * Executor used to run downloads.
+     * <p>
+     * Downloads may be throttled for a long time, they never hold the threads of {@link #io()}
+     * so the update checks keep running. Downloads are queued once every thread is busy.
+     *
+     * @return the shared download {@link ExecutorService}
+     */
+    public static synchronized ExecutorService download() {
+        if(download == null || download.isShutdown()) {
+            download = new ThreadPoolExecutor(DOWNLOAD_POOL_SIZE, DOWNLOAD_POOL_SIZE, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), daemonThreadFactory("updater-download"));
+            download.allowCoreThreadTimeOut(true);
+        }
+        return download;
+    }
+
+    /**
+     * Run a task once after the given delay.
+     * <p>
+     * An exception thrown by the task is logged.
+     *
+     * @param task  task to run
+     * @param delay delay in milliseconds
+     * @return cancellable handle
+     */
+    public static ScheduledFuture<?> schedule(Runnable task, long delay) {
+        return get().schedule(guard(task), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run a task periodically.
+     * <p>
+     * An exception thrown by the task is logged, it does not cancel the next runs.
+     *
+     * @param task   task to run
+     * @param delay  initial delay in milliseconds
+     * @param period period in milliseconds
+     * @return cancellable handle
+     */
+    public static ScheduledFuture<?> schedule(Runnable task, long delay, long period) {
+        return get().scheduleAtFixedRate(guard(task), delay, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Catch and log the exceptions of a task, which would otherwise be lost
+     * and cancel the next runs of a periodic task.
+     *
+     * @param task task to run
+     * @return guarded task
+     */
+    static Runnable guard(Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            }
+            catch(RuntimeException e) {
+                logger.log(Level.WARNING, "Updater task failed", e);
+            }
+        };
+    }
+
+    /**
+     * Stop the shared scheduler, network and download executors.
+     * <p>
+     * Every scheduled task is cancelled. The executors are recreated on next use.
+     */
+    public static synchronized void shutdown() {
+        if(executor != null) {
+            // Cancel the pending tasks, so their owners see them as done
+            executor.shutdownNow().forEach(task -> ((Future<?>) task).cancel(false));
+            executor = null;
+        }
+        if(io != null) {
+            io.shutdownNow();
+            io = null;
+        }
+        if(download != null) {
+            download.shutdownNow();
+            download = null;
+        }
+    }
+
+    /**
+     * Create a {@link ThreadFactory} producing named daemon threads.
+     *
+     * @param name thread name prefix
+     * @return {@link ThreadFactory}
+     */
+    static ThreadFactory daemonThreadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Coalesce identical requests.
+ * <p>
+ * The first caller of a key runs the request, concurrent callers of the same key wait for its result.
+ * A result kept as reusable is still returned for a short window after the request finished.
+ */
+public class SingleFlight {
+
+    /**
+     * Flights by key.
+     */
+    private final Map<String, Flight> flights = new HashMap<>();
+
+    /**
+     * Reuse window in nanoseconds.
+     */
+    private volatile long window;
+
+
+    /**
+     * @param window reuse window in milliseconds, 0 to share in-flight requests only
+     */
+    public SingleFlight(long window) {
+        setWindow(window);
+    }
+
+    /**
+     * @param window reuse window in milliseconds, 0 to share in-flight requests only
+     */
+    public void setWindow(long window) {
+        this.window = TimeUnit.MILLISECONDS.toNanos(window);
+    }
+
+    public long getWindow() {
+        return TimeUnit.NANOSECONDS.toMillis(window);
+    }
+
+    /**
+     * Key of a request made of its url and headers
+     *
+     * @param url     requested {@link URL}
+     * @param headers request headers, which may change the response
+     * @return request key
+     */
+    public static String key(URL url, Map<String, String> headers) {
+        return headers.isEmpty() ? url.toString() : url + " " + new TreeMap<>(headers);
+    }
+
+    /**
+     * Run a request, or attach to the identical one in flight.
+     * <p>
+     * The calling thread runs the request, or waits for the caller running it.
+     *
+     * @param key      request key
+     * @param request  request to run
+     * @param reusable true if the result can be returned after the request finished
+     * @param <T>      type of the result
+     * @return result of the request
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T call(String key, Supplier<T> request, Predicate<? super T> reusable) {
+        Flight flight;
+        boolean leader = false;
+        synchronized(this) {
+            expire(System.nanoTime());
+            flight = flights.get(key);
+            if(flight == null) {
+                flight = new Flight();
+                flights.put(key, flight);
+                leader = true;
+            }
+        }
+
+        // Attach to the flight
+        if(!leader) {
+            try {
+                return (T) flight.result.join();
+            }
+            catch(CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        // Run the request
+        try {
+            T result = request.get();
+            land(key, flight, reusable.test(result));
+            flight.result.complete(result);
+            return result;
+        }
+        catch(RuntimeException | Error e) {
+            land(key, flight, false);
+            flight.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of requests in flight or reusable
+     */
+    public synchronized int size() {
+        expire(System.nanoTime());
+        return flights.size();
+    }
+
+    /**
+     * Forget every request
+     */
+    public synchronized void clear() {
+        flights.clear();
+    }
+
+    /**
+     * The request finished, keep it for the reuse window or forget it.
+     */
+    private synchronized void land(String key, Flight flight, boolean reusable) {
+        if(reusable && window > 0) flight.landed = System.nanoTime();
+        else flights.remove(key, flight);
+    }
+
+    /**
+     * Forget the requests finished for longer than the reuse window.
+     */
+    private void expire(long now) {
+        for(Iterator<Flight> it = flights.values().iterator(); it.hasNext(); ) {
+            Flight flight = it.next();
+            if(flight.landed != 0 && now - flight.landed >= window) it.remove();
+        }
+    }
+
+    /**
+     * A request in flight or finished.
+     */
+    private static class Flight {
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private long landed;
+    }
+}
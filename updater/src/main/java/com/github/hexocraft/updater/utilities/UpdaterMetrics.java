@@ -0,0 +1,251 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import com.github.hexocraft.updater.enumeration.Result;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Built-in {@link Metrics}: counters and latency histograms, readable through JMX.
+ * <p>
+ * It is the default receiver of the measures. Call {@link #registerMBean()} to expose it
+ * as "com.github.hexocraft.updater:type=Metrics".
+ */
+public class UpdaterMetrics implements Metrics, UpdaterMetricsMXBean {
+
+    /**
+     * Name of the MBean.
+     */
+    public static final String OBJECT_NAME = "com.github.hexocraft.updater:type=Metrics";
+
+    /**
+     * Upper bounds of the histogram buckets in milliseconds.
+     */
+    private static final long[] BUCKETS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    /**
+     * Built-in instance.
+     */
+    private static final UpdaterMetrics builtIn = new UpdaterMetrics();
+
+    /**
+     * Receiver of the measures.
+     */
+    private static volatile Metrics metrics = builtIn;
+
+    private final Map<String, LongAdder> checks = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> checkLatency = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> requestLatency = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> downloads = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> downloadLatency = new ConcurrentHashMap<>();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final LongAdder bytes = new LongAdder();
+
+
+    /**
+     * @return receiver of the measures
+     */
+    public static Metrics get() {
+        return metrics;
+    }
+
+    /**
+     * Replace the receiver of the measures.
+     *
+     * @param metrics {@link Metrics} receiving the measures, null to disable the measures
+     */
+    public static void set(Metrics metrics) {
+        UpdaterMetrics.metrics = metrics != null ? metrics : new Metrics() {};
+    }
+
+    /**
+     * @return built-in instance
+     */
+    public static UpdaterMetrics builtIn() {
+        return builtIn;
+    }
+
+    /**
+     * Register the built-in instance in the platform MBean server.
+     * Does nothing if already registered.
+     *
+     * @throws JMException if the MBean cannot be registered
+     */
+    public static void registerMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(builtIn, new ObjectName(OBJECT_NAME));
+        }
+        catch(InstanceAlreadyExistsException ignored) {
+        }
+    }
+
+    @Override
+    public void onCheck(String channel, Result result, long nanos) {
+        increment(checks, channel + " " + result);
+        histogram(checkLatency, channel).add(nanos);
+    }
+
+    @Override
+    public void onRequestStart(URL url) {
+        inFlight.incrementAndGet();
+    }
+
+    @Override
+    public void onRequestEnd(URL url, int status, long nanos) {
+        inFlight.decrementAndGet();
+        increment(requests, url.getHost() + " " + status);
+        histogram(requestLatency, url.getHost()).add(nanos);
+    }
+
+    @Override
+    public void onDownloadBytes(URL url, int bytes) {
+        this.bytes.add(bytes);
+    }
+
+    @Override
+    public void onDownload(URL url, long nanos, IOException error) {
+        increment(downloads, url.getHost() + (error == null ? " success" : " failure"));
+        histogram(downloadLatency, url.getHost()).add(nanos);
+    }
+
+    @Override
+    public Map<String, Long> getChecks() {
+        return snapshot(checks);
+    }
+
+    @Override
+    public Map<String, Long> getCheckLatency() {
+        return snapshotHistograms(checkLatency);
+    }
+
+    @Override
+    public Map<String, Long> getRequests() {
+        return snapshot(requests);
+    }
+
+    @Override
+    public Map<String, Long> getRequestLatency() {
+        return snapshotHistograms(requestLatency);
+    }
+
+    @Override
+    public long getInFlightRequests() {
+        return inFlight.get();
+    }
+
+    @Override
+    public Map<String, Long> getDownloads() {
+        return snapshot(downloads);
+    }
+
+    @Override
+    public Map<String, Long> getDownloadLatency() {
+        return snapshotHistograms(downloadLatency);
+    }
+
+    @Override
+    public long getBytesDownloaded() {
+        return bytes.sum();
+    }
+
+    @Override
+    public void reset() {
+        checks.clear();
+        checkLatency.clear();
+        requests.clear();
+        requestLatency.clear();
+        downloads.clear();
+        downloadLatency.clear();
+        bytes.reset();
+    }
+
+    private static void increment(Map<String, LongAdder> counters, String key) {
+        counters.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    private static Histogram histogram(Map<String, Histogram> histograms, String key) {
+        return histograms.computeIfAbsent(key, k -> new Histogram());
+    }
+
+    private static SortedMap<String, Long> snapshot(Map<String, LongAdder> counters) {
+        SortedMap<String, Long> snapshot = new TreeMap<>();
+        counters.forEach((key, counter) -> snapshot.put(key, counter.sum()));
+        return snapshot;
+    }
+
+    private static SortedMap<String, Long> snapshotHistograms(Map<String, Histogram> histograms) {
+        SortedMap<String, Long> snapshot = new TreeMap<>();
+        histograms.forEach((key, histogram) -> histogram.snapshot(key, snapshot));
+        return snapshot;
+    }
+
+
+    /**
+     * Latency histogram with fixed buckets.
+     */
+    static class Histogram {
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+
+        Histogram() {
+            for(int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void add(long nanos) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+            while(bucket < BUCKETS.length && millis > BUCKETS[bucket]) bucket++;
+            buckets[bucket].increment();
+            count.increment();
+            sum.add(millis);
+        }
+
+        /**
+         * Write the cumulative buckets, count and sum
+         */
+        void snapshot(String key, Map<String, Long> snapshot) {
+            long cumulative = 0;
+            for(int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i].sum();
+                snapshot.put(key + " le=" + (i < BUCKETS.length ? Long.toString(BUCKETS[i]) : "+Inf"), cumulative);
+            }
+            snapshot.put(key + " count", count.sum());
+            snapshot.put(key + " sum", sum.sum());
+        }
+    }
+}
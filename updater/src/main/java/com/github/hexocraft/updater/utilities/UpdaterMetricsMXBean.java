@@ -0,0 +1,74 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link UpdaterMetrics}.
+ * <p>
+ * Latencies are histograms in milliseconds: "key le=100" is the number of measures of 100ms or less,
+ * "key count" the number of measures and "key sum" their total.
+ */
+public interface UpdaterMetricsMXBean {
+
+    /**
+     * @return number of checks, by "channel result"
+     */
+    Map<String, Long> getChecks();
+
+    /**
+     * @return latency histogram of the checks, by channel
+     */
+    Map<String, Long> getCheckLatency();
+
+    /**
+     * @return number of HTTP responses, by "host status"
+     */
+    Map<String, Long> getRequests();
+
+    /**
+     * @return latency histogram of the HTTP responses, by host
+     */
+    Map<String, Long> getRequestLatency();
+
+    /**
+     * @return number of HTTP requests waiting for their response
+     */
+    long getInFlightRequests();
+
+    /**
+     * @return number of downloads, by "host success" or "host failure"
+     */
+    Map<String, Long> getDownloads();
+
+    /**
+     * @return latency histogram of the downloads, by host
+     */
+    Map<String, Long> getDownloadLatency();
+
+    /**
+     * @return number of bytes downloaded
+     */
+    long getBytesDownloaded();
+
+    /**
+     * Reset every counter.
+     */
+    void reset();
+}
@@ -0,0 +1,75 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import java.net.HttpURLConnection;
+
+/**
+ * HTTP validators of a previous response, used to send conditional requests.
+ */
+public class Validator {
+
+    /**
+     * Value of the ETag header.
+     */
+    private final String etag;
+
+    /**
+     * Value of the Last-Modified header.
+     */
+    private final String lastModified;
+
+
+    public Validator(String etag, String lastModified) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Read validators from the response headers
+     *
+     * @param connection {@link HttpURLConnection} holding the response
+     * @return {@link Validator} or null if the response has no validator
+     */
+    public static Validator of(HttpURLConnection connection) {
+        String etag = connection.getHeaderField("ETag");
+        String lastModified = connection.getHeaderField("Last-Modified");
+        if(etag == null && lastModified == null) {
+            return null;
+        }
+        return new Validator(etag, lastModified);
+    }
+
+    /**
+     * Add conditional headers to the request
+     *
+     * @param connection {@link HttpURLConnection} not yet connected
+     */
+    public void apply(HttpURLConnection connection) {
+        if(etag != null) connection.setRequestProperty("If-None-Match", etag);
+        if(lastModified != null) connection.setRequestProperty("If-Modified-Since", lastModified);
+    }
+
+    public String etag() {
+        return etag;
+    }
+
+    public String lastModified() {
+        return lastModified;
+    }
+}
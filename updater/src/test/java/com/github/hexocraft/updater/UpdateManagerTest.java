@@ -0,0 +1,316 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.github.hexocraft.updater;
+
+import com.github.hexocraft.updater.channels.Channel;
+import com.github.hexocraft.updater.enumeration.Result;
+import com.github.hexocraft.updater.utilities.ResultCache;
+import com.github.hexocraft.updater.utilities.Scheduler;
+import com.github.hexocraft.updater.utilities.Validator;
+import javafx.util.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateManagerTest {
+
+    /**
+     * Channel counting its reads
+     */
+    private static class CountingChannel implements Channel {
+
+        private final String id;
+        private final AtomicInteger reads;
+
+        CountingChannel(String id, AtomicInteger reads) {
+            this.id = id;
+            this.reads = reads;
+        }
+
+        @Override
+        public String id() {
+            return id;
+        }
+
+        /**
+         * Result of the next reads
+         */
+        private volatile Result result = Result.SUCCESS;
+
+        /**
+         * Time from which the next reads are accepted again
+         */
+        private volatile long retryAt = 0;
+
+        @Override
+        public long retryAt() {
+            return retryAt;
+        }
+
+        @Override
+        public Pair<Result,Update> read() {
+            reads.incrementAndGet();
+            return result == Result.SUCCESS ? new Pair<>(Result.SUCCESS, new Update("Plugin", new Version(2, 0, 0))) : new Pair<>(result, null);
+        }
+    }
+
+    /**
+     * Channel sending conditional requests
+     */
+    private static class ValidatingChannel extends CountingChannel {
+
+        private volatile Map<String, Validator> validators = Collections.emptyMap();
+
+        ValidatingChannel(String id, AtomicInteger reads) {
+            super(id, reads);
+        }
+
+        @Override
+        public Pair<Result,Update> read() {
+            validators = Collections.singletonMap("url", new Validator("\"etag\"", null));
+            return super.read();
+        }
+
+        @Override
+        public Map<String, Validator> validators() {
+            return validators;
+        }
+
+        @Override
+        public void restore(Update update, Map<String, Validator> validators) {
+            this.validators = validators;
+        }
+    }
+
+    @Test
+    public void UpdateManagerGroups() throws Exception {
+        UpdateManager manager = UpdateManager.get();
+        AtomicInteger readsA = new AtomicInteger();
+        AtomicInteger readsB = new AtomicInteger();
+        int updaters0 = manager.updaters();
+        int groups0 = manager.groups();
+
+        // 10 updaters reading 2 sources
+        List<Updater<?>> updaters = new ArrayList<>();
+        for(int i = 0; i < 10; i++) {
+            Channel channel = i % 2 == 0 ? new CountingChannel("test:a", readsA) : new CountingChannel("test:b", readsB);
+            updaters.add(new Updater<>(new Version(1, 0, 0), channel).setDownload(false).setDelay(0).setPeriod(TimeUnit.HOURS.toMillis(1)).run());
+        }
+        assertEquals(manager.updaters(), updaters0 + 10);
+        assertEquals(manager.groups(), groups0 + 2);
+
+        // Every updater got the result of a single query per source
+        List<CompletableFuture<Result>> checks = new ArrayList<>();
+        for(Updater<?> updater : updaters) checks.add(updater.findUpdate());
+        for(CompletableFuture<Result> check : checks) assertSame(check.get(5, TimeUnit.SECONDS), Result.UPDATE_AVAILABLE);
+        assertEquals(readsA.get(), 1);
+        assertEquals(readsB.get(), 1);
+        assertNotSame(updaters.get(0).getUpdate(), updaters.get(2).getUpdate());
+
+        updaters.forEach(Updater::stop);
+        assertEquals(manager.updaters(), updaters0);
+        assertEquals(manager.groups(), groups0);
+        assertFalse(updaters.get(0).isRunning());
+    }
+
+    @Test
+    public void UpdateManagerValidators() throws Exception {
+        ResultCache cache = new ResultCache(Files.createTempDirectory("updater").resolve("cache.json"), 0);
+        ValidatingChannel first = new ValidatingChannel("test:validators", new AtomicInteger());
+        AtomicInteger reads = new AtomicInteger();
+        ValidatingChannel second = new ValidatingChannel("test:validators", reads);
+        Updater<?> updater1 = new Updater<>(new Version(1, 0, 0), first).setDownload(false).setDelay(-1).setCache(cache).run();
+        Updater<?> updater2 = new Updater<>(new Version(1, 0, 0), second).setDownload(false).setDelay(-1).setCache(cache).run();
+        try {
+            // The query is sent by the first channel, every updater stores its validators
+            CompletableFuture<Result> check1 = updater1.findUpdate();
+            CompletableFuture<Result> check2 = updater2.findUpdate();
+            assertSame(check1.get(5, TimeUnit.SECONDS), Result.UPDATE_AVAILABLE);
+            assertSame(check2.get(5, TimeUnit.SECONDS), Result.UPDATE_AVAILABLE);
+            assertEquals(reads.get(), 0);
+            assertEquals(second.validators().get("url").etag(), "\"etag\"");
+            assertEquals(cache.get("test:validators").validators().get("url").etag(), "\"etag\"");
+        }
+        finally {
+            updater1.stop();
+            updater2.stop();
+        }
+    }
+
+    @Test
+    public void UpdateManagerFailingUpdater() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        AtomicInteger checks = new AtomicInteger();
+        Updater<?> failing = new Updater<>(new Version(1, 0, 0), new CountingChannel("test:failing", reads)).setDownload(false).setDelay(-1).setPeriod(50)
+                .onStart(() -> { throw new IllegalStateException("onStart"); }).run();
+        Updater<?> updater = new Updater<>(new Version(1, 0, 0), new CountingChannel("test:failing", reads)).setDownload(false).setDelay(-1).setPeriod(50)
+                .onFinish((result, update) -> checks.incrementAndGet()).run();
+        try {
+            // The group keeps being checked
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+            while(checks.get() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(checks.get() >= 3);
+        }
+        finally {
+            failing.stop();
+            updater.stop();
+        }
+    }
+
+    @Test
+    public void UpdateManagerBackoff() throws Exception {
+        CountingChannel channel = new CountingChannel("test:backoff", new AtomicInteger());
+        long period = TimeUnit.MINUTES.toMillis(1);
+        Updater<?> updater = new Updater<>(new Version(1, 0, 0), channel).setDownload(false).setDelay(-1).setPeriod(period).setMaxBackoff(TimeUnit.MINUTES.toMillis(5)).run();
+        try {
+            // Failed checks back off up to the maximum delay
+            channel.result = Result.ERROR;
+            long delay = 0;
+            UpdateManager.window = 0;
+            for(int i = 0; i < 10; i++) {
+                assertSame(updater.findUpdate().get(5, TimeUnit.SECONDS), Result.ERROR);
+                assertTrue(updater.getRetryDelay() >= period);
+                assertTrue(updater.getRetryDelay() <= Math.min(TimeUnit.MINUTES.toMillis(5), Math.max(period, delay) * 3));
+                delay = updater.getRetryDelay();
+            }
+            assertTrue(updater.isRunning());
+
+            // A successful check resets the delay
+            channel.result = Result.SUCCESS;
+            assertSame(updater.findUpdate().get(5, TimeUnit.SECONDS), Result.UPDATE_AVAILABLE);
+            assertEquals(updater.getRetryDelay(), 0L);
+        }
+        finally {
+            UpdateManager.window = TimeUnit.SECONDS.toMillis(30);
+            updater.stop();
+        }
+    }
+
+    @Test
+    public void UpdateManagerRateLimited() throws Exception {
+        CountingChannel channel = new CountingChannel("test:limited", new AtomicInteger());
+        long period = TimeUnit.MINUTES.toMillis(1);
+        Updater<?> updater = new Updater<>(new Version(1, 0, 0), channel).setDownload(false).setDelay(-1).setPeriod(period).setMaxBackoff(TimeUnit.MINUTES.toMillis(5)).run();
+        try {
+            // The next check waits until the host accepts requests again, beyond the maximum backoff
+            channel.result = Result.RATE_LIMITED;
+            channel.retryAt = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+            assertSame(updater.findUpdate().get(5, TimeUnit.SECONDS), Result.RATE_LIMITED);
+            assertTrue(updater.getRetryDelay() > TimeUnit.MINUTES.toMillis(59));
+
+            // Without known reset time, the backoff applies
+            UpdateManager.window = 0;
+            channel.retryAt = 0;
+            assertSame(updater.findUpdate().get(5, TimeUnit.SECONDS), Result.RATE_LIMITED);
+            assertTrue(updater.getRetryDelay() <= TimeUnit.MINUTES.toMillis(5));
+        }
+        finally {
+            UpdateManager.window = TimeUnit.SECONDS.toMillis(30);
+            updater.stop();
+        }
+    }
+
+    @Test
+    public void UpdateManagerQueries() throws Exception {
+        UpdateManager manager = UpdateManager.get();
+        int queries0 = manager.queries();
+
+        // An updater which is not running leaves no query behind
+        AtomicInteger reads = new AtomicInteger();
+        Updater<?> idle = new Updater<>(new Version(1, 0, 0), new CountingChannel("test:idle", reads)).setDownload(false);
+        assertSame(idle.findUpdate().get(5, TimeUnit.SECONDS), Result.UPDATE_AVAILABLE);
+        assertEquals(reads.get(), 1);
+        assertEquals(manager.queries(), queries0);
+
+        // A failed query is not reused during the window
+        CountingChannel channel = new CountingChannel("test:failed", reads);
+        Updater<?> updater = new Updater<>(new Version(1, 0, 0), channel).setDownload(false).setDelay(-1).run();
+        try {
+            channel.result = Result.ERROR;
+            assertSame(updater.findUpdate().get(5, TimeUnit.SECONDS), Result.ERROR);
+            channel.result = Result.SUCCESS;
+            assertSame(updater.findUpdate().get(5, TimeUnit.SECONDS), Result.UPDATE_AVAILABLE);
+            assertEquals(reads.get(), 3);
+        }
+        finally {
+            updater.stop();
+        }
+        assertEquals(manager.queries(), queries0);
+    }
+
+    @Test
+    public void UpdateManagerSchedulerShutdown() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        AtomicInteger checks = new AtomicInteger();
+        Updater<?> first = new Updater<>(new Version(1, 0, 0), new CountingChannel("test:shutdown", reads)).setDownload(false).setDelay(-1).setPeriod(50).run();
+        Updater<?> second = null;
+        try {
+            // The group is scheduled again with the same period once the scheduler is shut down
+            Scheduler.shutdown();
+            second = new Updater<>(new Version(1, 0, 0), new CountingChannel("test:shutdown", reads)).setDownload(false).setDelay(-1).setPeriod(50)
+                    .onFinish((result, update) -> checks.incrementAndGet()).run();
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+            while(checks.get() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(checks.get() >= 1);
+        }
+        finally {
+            first.stop();
+            if(second != null) second.stop();
+        }
+    }
+
+    @Test
+    public void UpdateManagerGroupBackoff() throws Exception {
+        UpdateManager manager = UpdateManager.get();
+        AtomicInteger reads = new AtomicInteger();
+        CountingChannel channel = new CountingChannel("test:group-backoff", reads);
+        channel.result = Result.ERROR;
+        long period = TimeUnit.MINUTES.toMillis(1);
+        List<Updater<?>> updaters = new ArrayList<>();
+        for(int i = 0; i < 5; i++) {
+            Channel member = i == 0 ? channel : new CountingChannel("test:group-backoff", reads);
+            updaters.add(new Updater<>(new Version(1, 0, 0), member).setDownload(false).setDelay(-1).setPeriod(period).run());
+        }
+        try {
+            // The whole group backs off with a single delay
+            assertSame(updaters.get(0).findUpdate().get(5, TimeUnit.SECONDS), Result.ERROR);
+            long delay = manager.retryDelay(updaters.get(0));
+            assertTrue(delay >= period);
+            for(Updater<?> updater : updaters) assertEquals(manager.retryDelay(updater), delay);
+
+            // No updater of the group leaves the backoff on its own
+            for(CompletableFuture<Result> check : manager.checkAll()) check.get(5, TimeUnit.SECONDS);
+            assertEquals(reads.get(), 1);
+        }
+        finally {
+            updaters.forEach(Updater::stop);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.github.hexocraft.updater.channels;
+
+import com.github.hexocraft.updater.Updater;
+import com.github.hexocraft.updater.Version;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BukkitBatchChannelTest {
+
+    @Test
+    public void BukkitBatchChannelRegister() {
+        // A channel which is never run is not queried
+        BukkitBatchChannel channel = new BukkitBatchChannel("register-key", "12345");
+        Batch batch = BukkitBatchChannel.batches.get("register-key");
+        assertEquals(batch.size(), 0);
+
+        // The project is queried while its updater is running
+        Updater<?> updater = new Updater<>(new Version(1, 0, 0), channel).setDelay(-1).run();
+        assertEquals(batch.size(), 1);
+        updater.stop();
+        assertEquals(batch.size(), 0);
+    }
+}
@@ -16,9 +16,16 @@
  */
 package com.github.hexocraft.updater.channels;
 
+import com.github.hexocraft.updater.Update;
+import com.github.hexocraft.updater.enumeration.Resolution;
 import com.github.hexocraft.updater.enumeration.Result;
+import javafx.util.Pair;
 import org.junit.jupiter.api.Test;
 
+import java.io.StringReader;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
 
 class BukkitChannelTest {
@@ -29,4 +36,47 @@ class BukkitChannelTest {
         assertSame(new BukkitChannel("000000").read().getKey(), Result.REPO_NO_RELEASES);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void BukkitChannelParse() throws Exception {
+        String files = "[{\"name\":\"Plugin v1.0.0\",\"downloadUrl\":\"https://dev.bukkit.org/1.jar\",\"fileName\":\"Plugin-1.0.0.jar\",\"releaseType\":\"release\",\"gameVersion\":\"1.8\"},"
+                + "{\"name\":\"Plugin v1.1.0\",\"downloadUrl\":\"https://dev.bukkit.org/2.jar\",\"fileName\":\"Plugin-1.1.0.jar\",\"releaseType\":\"beta\"}]";
+
+        Pair<Result,Update> read = BukkitChannel.parse(new StringReader(files));
+        assertSame(read.getKey(), Result.SUCCESS);
+        assertEquals(read.getValue().title(), "Plugin v1.1.0");
+        assertEquals(read.getValue().version().toString(), "1.1.0");
+        assertEquals(read.getValue().version().getPreRelease(), "pre-release");
+        assertEquals(read.getValue().downloadUrl().toString(), "https://dev.bukkit.org/2.jar");
+
+        assertSame(BukkitChannel.parse(new StringReader("[]")).getKey(), Result.REPO_NO_RELEASES);
+    }
+
+    @Test
+    public void BukkitChannelResolution() throws Exception {
+        String files = "[{\"name\":\"Plugin v2.0.0\",\"downloadUrl\":\"https://dev.bukkit.org/1.jar\",\"fileName\":\"Plugin-2.0.0.jar\",\"releaseType\":\"release\"},"
+                + "{\"name\":\"Plugin v1.5.0\",\"downloadUrl\":\"https://dev.bukkit.org/2.jar\",\"fileName\":\"Plugin-1.5.0.jar\",\"releaseType\":\"release\"},"
+                + "{\"name\":\"Plugin v2.1.0\",\"downloadUrl\":\"https://dev.bukkit.org/3.jar\",\"fileName\":\"Plugin-2.1.0.jar\",\"releaseType\":\"beta\"}]";
+
+        // The last uploaded file is not always the highest version, alpha and beta files are skipped unless accepted
+        assertEquals(BukkitChannel.parse(new StringReader(files), Resolution.LATEST, false).getValue().version().toString(), "1.5.0");
+        assertEquals(BukkitChannel.parse(new StringReader(files), Resolution.HIGHEST, false).getValue().version().toString(), "2.0.0");
+        assertEquals(BukkitChannel.parse(new StringReader(files), Resolution.HIGHEST, true).getValue().version().toString(), "2.1.0");
+        assertSame(BukkitChannel.parse(new StringReader("[" + files.substring(files.lastIndexOf("{"))), Resolution.LATEST, false).getKey(), Result.REPO_NO_RELEASES);
+
+        // Alpha and beta files are accepted by default, as in the batch channel
+        assertEquals(new BukkitChannel("1").id(), new BukkitChannel("1").setPreReleases(true).id());
+    }
+
+    @Test
+    public void BukkitChannelParseProjects() throws Exception {
+        String files = "[{\"projectId\":1,\"name\":\"A v1.0.0\",\"downloadUrl\":\"https://dev.bukkit.org/a1.jar\",\"fileName\":\"A-1.0.0.jar\",\"releaseType\":\"release\"},"
+                + "{\"projectId\":2,\"name\":\"B v2.0.0\",\"downloadUrl\":\"https://dev.bukkit.org/b2.jar\",\"fileName\":\"B-2.0.0.jar\",\"releaseType\":\"release\"},"
+                + "{\"projectId\":1,\"name\":\"A v1.1.0\",\"downloadUrl\":\"https://dev.bukkit.org/a2.jar\",\"fileName\":\"A-1.1.0.jar\",\"releaseType\":\"release\"}]";
+
+        Map<String, Pair<Result,Update>> read = BukkitChannel.parseProjects(new StringReader(files));
+        assertEquals(read.size(), 2);
+        assertEquals(read.get("1").getValue().version().toString(), "1.1.0");
+        assertEquals(read.get("2").getValue().version().toString(), "2.0.0");
+    }
+
+}
@@ -0,0 +1,108 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.github.hexocraft.updater.channels;
+
+import com.github.hexocraft.updater.Update;
+import com.github.hexocraft.updater.Updater;
+import com.github.hexocraft.updater.Version;
+import com.github.hexocraft.updater.enumeration.Result;
+import javafx.util.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GithubBatchChannelTest {
+
+    @Test
+    public void GithubBatchChannelQuery() {
+        String query = GithubBatchChannel.query(Arrays.asList("HexoCraft/updater", "HexoCraft/dependency-manager-relocator"));
+        assertTrue(query.contains("r0: repository(owner: \"HexoCraft\", name: \"updater\")"));
+        assertTrue(query.contains("r1: repository(owner: \"HexoCraft\", name: \"dependency-manager-relocator\")"));
+    }
+
+    @Test
+    public void GithubBatchChannelParse() throws Exception {
+        List<String> repositories = Arrays.asList("a/one", "a/two", "a/three");
+        String response = "{\"data\":{"
+                + "\"r0\":{\"latestRelease\":{\"tagName\":\"v1.2.0\",\"name\":\"One\",\"description\":\"Changes\",\"publishedAt\":\"2020-05-01T10:00:00Z\",\"releaseAssets\":{\"nodes\":[{\"downloadUrl\":\"https://github.com/one.jar\"}]}}},"
+                + "\"r1\":{\"latestRelease\":null},"
+                + "\"r2\":null}}";
+
+        Map<String, Pair<Result,Update>> read = GithubBatchChannel.parse(new StringReader(response), repositories);
+        assertSame(read.get("a/one").getKey(), Result.SUCCESS);
+        assertEquals(read.get("a/one").getValue().version().toString(), "1.2.0");
+        assertEquals(read.get("a/one").getValue().downloadUrl().toString(), "https://github.com/one.jar");
+        assertSame(read.get("a/two").getKey(), Result.REPO_NO_RELEASES);
+        assertSame(read.get("a/three").getKey(), Result.ERROR);
+        assertEquals(read.get("a/one").getValue().released(), 1588327200000L);
+    }
+
+    @Test
+    public void GithubBatchChannelParseErrors() throws Exception {
+        List<String> repositories = Arrays.asList("a/one", "a/two");
+
+        // A rate limited query is answered with a 200 status and no data
+        String limited = "{\"data\":null,\"errors\":[{\"type\":\"RATE_LIMITED\",\"message\":\"API rate limit exceeded\"}]}";
+        Map<String, Pair<Result,Update>> read = GithubBatchChannel.parse(new StringReader(limited), repositories);
+        assertSame(read.get("a/one").getKey(), Result.RATE_LIMITED);
+        assertSame(read.get("a/two").getKey(), Result.RATE_LIMITED);
+
+        // Other errors, the repositories read are kept
+        String failed = "{\"data\":{\"r0\":{\"latestRelease\":null}},\"errors\":[{\"type\":\"MAX_NODE_LIMIT_EXCEEDED\"}]}";
+        read = GithubBatchChannel.parse(new StringReader(failed), repositories);
+        assertSame(read.get("a/one").getKey(), Result.REPO_NO_RELEASES);
+        assertSame(read.get("a/two").getKey(), Result.ERROR);
+    }
+
+    @Test
+    public void GithubBatchChannelUnregister() {
+        GithubBatchChannel first = new GithubBatchChannel("unregister-token", "a/one");
+        GithubBatchChannel second = new GithubBatchChannel("unregister-token", "a/one");
+        Batch batch = GithubBatchChannel.batches.get("unregister-token");
+        assertEquals(batch.size(), 0);
+
+        // The repository stays in the batch until its last updater is stopped
+        Updater<?> updater1 = new Updater<>(new Version(1, 0, 0), first).setDelay(-1).run();
+        Updater<?> updater2 = new Updater<>(new Version(1, 0, 0), second).setDelay(-1).run();
+        updater1.stop();
+        assertEquals(batch.size(), 1);
+        updater2.stop();
+        assertEquals(batch.size(), 0);
+
+        // A reloaded plugin registers again, only once
+        updater1.run();
+        updater1.run();
+        assertEquals(batch.size(), 1);
+        updater1.stop();
+        assertEquals(batch.size(), 0);
+    }
+
+    @Test
+    public void GithubBatchChannelRegister() {
+        // A channel which is never run is not queried
+        new GithubBatchChannel("register-token", "a/one");
+        new GithubBatchChannel("register-token", "a/two");
+        assertEquals(GithubBatchChannel.batches.get("register-token").size(), 0);
+    }
+}
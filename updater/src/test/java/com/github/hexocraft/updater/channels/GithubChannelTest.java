@@ -16,10 +16,26 @@
  */
 package com.github.hexocraft.updater.channels;
 
+import com.github.hexocraft.updater.Update;
+import com.github.hexocraft.updater.enumeration.Resolution;
 import com.github.hexocraft.updater.enumeration.Result;
+import com.sun.net.httpserver.HttpServer;
+import javafx.util.Pair;
 import org.junit.jupiter.api.Test;
 
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class GithubChannelTest {
 
@@ -28,4 +44,121 @@ class GithubChannelTest {
         assertSame(new GithubChannel("HexoCraft/dependency-manager-relocator").read().getKey(), Result.SUCCESS);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void GithubChannelParse() throws Exception {
+        String release = "{\"name\":\"Release 1.2.0\",\"tag_name\":\"v1.2.0\",\"draft\":false,\"prerelease\":false,\"body\":\"Changes\","
+                + "\"published_at\":\"2020-01-31T12:00:00Z\","
+                + "\"author\":{\"login\":\"hexosse\"},\"assets\":[{\"name\":\"a.jar\",\"browser_download_url\":\"https://github.com/a.jar\"},{\"browser_download_url\":\"https://github.com/b.jar\"}]}";
+
+        Pair<Result,Update> read = GithubChannel.parseLatest(new StringReader(release));
+        assertSame(read.getKey(), Result.SUCCESS);
+        assertEquals(read.getValue().title(), "Release 1.2.0");
+        assertEquals(read.getValue().version().toString(), "1.2.0");
+        assertEquals(read.getValue().description(), "Changes");
+        assertEquals(read.getValue().downloadUrl().toString(), "https://github.com/a.jar");
+        assertEquals(read.getValue().released(), 1580472000000L);
+
+        assertTrue(GithubChannel.parsePage(new StringReader("[]")).isEmpty());
+        assertSame(GithubChannel.parseLatest(new StringReader("")).getKey(), Result.REPO_NO_RELEASES);
+        assertSame(GithubChannel.parseLatest(new StringReader("{\"tag_name\":\"v1.0.0\",\"assets\":[]}")).getKey(), Result.REPO_NO_RELEASES);
+    }
+
+    @Test
+    public void GithubChannelParseFilters() throws Exception {
+        String releases = "[{\"id\":3,\"tag_name\":\"v2.0.0\",\"draft\":true,\"assets\":[{\"browser_download_url\":\"https://github.com/3.jar\"}]},"
+                + "{\"id\":2,\"tag_name\":\"v1.2.0\",\"prerelease\":true,\"assets\":[{\"browser_download_url\":\"https://github.com/2.jar\"}]},"
+                + "{\"id\":1,\"tag_name\":\"v1.1.0\",\"assets\":[{\"browser_download_url\":\"https://github.com/1.jar\"}]}]";
+
+        // Drafts are never returned
+        List<GithubChannel.GithubRelease> page = GithubChannel.parsePage(new StringReader(releases));
+        assertEquals(page.size(), 3);
+        assertSame(GithubChannel.accept(page.get(0), true), false);
+
+        // Pre-releases are marked as such or tagged with a pre-release version
+        assertSame(GithubChannel.accept(page.get(1), false), false);
+        assertSame(GithubChannel.accept(page.get(2), false), true);
+        assertSame(GithubChannel.accept(GithubChannel.parsePage(new StringReader("[{\"tag_name\":\"v1.3.0-beta\",\"assets\":[{\"browser_download_url\":\"https://github.com/4.jar\"}]}]")).get(0), false), false);
+
+        Pair<Result,Update> latest = GithubChannel.parseLatest(new StringReader("{\"id\":1,\"tag_name\":\"v1.1.0\",\"assets\":[{\"browser_download_url\":\"https://github.com/1.jar\"}]}"));
+        assertEquals(latest.getValue().version().toString(), "1.1.0");
+    }
+
+    @Test
+    public void GithubChannelResolution() throws Exception {
+        // Releases newest first, the highest version is not the newest one
+        List<String> releases = new ArrayList<>(Arrays.asList(release(6, "1.9.1", ""), release(5, "2.0.0-beta", "\"prerelease\":true,"),
+                release(4, "2.0.0", ""), release(3, "1.9.0", ""), release(2, "3.0.0", "\"draft\":true,"), release(1, "1.0.0", "")));
+        AtomicInteger requests = new AtomicInteger();
+        List<String> queries = Collections.synchronizedList(new ArrayList<>());
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/repos/", exchange -> {
+            requests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+            String query = exchange.getRequestURI().getQuery();
+            queries.add(query);
+            String body;
+            if(path.endsWith("/latest")) {
+                body = releases.get(0);
+            }
+            else {
+                int size = Integer.parseInt(query.replaceAll("per_page=(\\d+).*", "$1"));
+                int page = query.matches(".*&page=\\d+") ? Integer.parseInt(query.substring(query.lastIndexOf('=') + 1)) : 1;
+                int from = (page - 1) * size;
+                int to = Math.min(from + size, releases.size());
+                body = "[" + String.join(",", releases.subList(from, to)) + "]";
+                if(to < releases.size()) {
+                    String next = "http://127.0.0.1:" + server.getAddress().getPort() + path + "?per_page=" + size + "&page=" + (page + 1);
+                    exchange.getResponseHeaders().add("Link", "<" + next + ">; rel=\"next\"");
+                }
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try(OutputStream output = exchange.getResponseBody()) {
+                output.write(bytes);
+            }
+        });
+        server.start();
+
+        String host = GithubChannel.host;
+        int pageSize = GithubChannel.pageSize;
+        int highestPageSize = GithubChannel.highestPageSize;
+        long window = Flights.requests.getWindow();
+        GithubChannel.host = "http://127.0.0.1:" + server.getAddress().getPort();
+        GithubChannel.pageSize = 2;
+        GithubChannel.highestPageSize = 4;
+        Flights.requests.setWindow(0);
+        try {
+            // Latest release, a single request
+            assertEquals(new GithubChannel("hexocraft/plugin").read().getValue().version().toString(), "1.9.1");
+            assertEquals(requests.getAndSet(0), 1);
+
+            // Newest release, the scan stops on the first page
+            assertEquals(new GithubChannel("hexocraft/plugin").setResolution(Resolution.NEWEST).setPreReleases(true).read().getValue().version().toString(), "1.9.1");
+            assertEquals(requests.getAndSet(0), 1);
+            assertEquals(queries.get(queries.size() - 1), "per_page=2");
+
+            // Highest version, every page is read once, with large pages
+            GithubChannel highest = new GithubChannel("hexocraft/plugin").setResolution(Resolution.HIGHEST);
+            assertEquals(highest.read().getValue().version().toString(), "2.0.0");
+            assertEquals(requests.getAndSet(0), 2);
+            assertEquals(queries.get(queries.size() - 2), "per_page=4");
+
+            // Then only the releases published since
+            releases.add(0, release(7, "1.9.2", ""));
+            assertEquals(highest.read().getValue().version().toString(), "2.0.0");
+            assertEquals(requests.getAndSet(0), 1);
+        }
+        finally {
+            GithubChannel.host = host;
+            GithubChannel.pageSize = pageSize;
+            GithubChannel.highestPageSize = highestPageSize;
+            Flights.requests.setWindow(window);
+            server.stop(0);
+        }
+    }
+
+    private static String release(int id, String version, String flags) {
+        return "{\"id\":" + id + ",\"tag_name\":\"v" + version + "\"," + flags + "\"assets\":[{\"browser_download_url\":\"https://github.com/" + id + ".jar\"}]}";
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import com.github.hexocraft.updater.Version;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CadenceTest {
+
+  private static final long MIN = TimeUnit.MINUTES.toMillis(15);
+  private static final long MAX = TimeUnit.DAYS.toMillis(1);
+  private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+  @Test
+  public void CadenceActive() {
+    long now = System.currentTimeMillis();
+    Cadence cadence = new Cadence();
+
+    // A release every day, checked every hour
+    for(int i = 0; i < 4; i++) {
+      cadence.observe(new Version(1, i, 0), now - (3 - i) * DAY, now);
+    }
+    assertEquals(cadence.releases(), 4);
+    assertEquals(cadence.period(MIN, MAX, now), TimeUnit.HOURS.toMillis(1));
+
+    // The same version does not count as a release
+    cadence.observe(new Version(1, 3, 0), now, now + DAY);
+    assertEquals(cadence.releases(), 4);
+
+    // A new version without release date is dated when seen, one early release does not change the median
+    cadence.observe(new Version(1, 4, 0), 0, now + DAY / 2);
+    assertEquals(cadence.releases(), 5);
+    assertEquals(cadence.period(MIN, MAX, now + DAY / 2), TimeUnit.HOURS.toMillis(1));
+  }
+
+  @Test
+  public void CadenceDormant() {
+    long now = System.currentTimeMillis();
+
+    // Released two years ago
+    Cadence dormant = new Cadence();
+    dormant.observe(new Version(1, 0, 0), now - 730 * DAY, now);
+    assertEquals(dormant.period(MIN, MAX, now), MAX);
+
+    // Nothing known yet, the period grows while no release is seen
+    Cadence unknown = new Cadence();
+    unknown.observe(new Version(1, 0, 0), 0, now);
+    assertEquals(unknown.releases(), 0);
+    assertEquals(unknown.period(MIN, MAX, now), MIN);
+    assertEquals(unknown.period(MIN, MAX, now + 2 * DAY), TimeUnit.HOURS.toMillis(2));
+  }
+}
@@ -0,0 +1,394 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.github.hexocraft.updater.utilities;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloaderTest {
+
+  private static final String ETAG = "\"file-v1\"";
+
+  /**
+   * Start a local server serving the given file content, with range support
+   */
+  private static HttpServer server(byte[] content, List<String> ranges) throws Exception {
+    return server(content, ranges, null);
+  }
+
+  /**
+   * Start a local server serving the given file content, failing once the given range
+   */
+  private static HttpServer server(byte[] content, List<String> ranges, String failing) throws Exception {
+    AtomicBoolean failed = new AtomicBoolean();
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/plugin.jar", exchange -> {
+      String range = exchange.getRequestHeaders().getFirst("Range");
+      String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+      ranges.add(range);
+      if(range != null && range.equals(failing) && failed.compareAndSet(false, true)) {
+        exchange.sendResponseHeaders(500, -1);
+        exchange.close();
+        return;
+      }
+      int start = 0;
+      int end = content.length - 1;
+      boolean partial = range != null && ETAG.equals(ifRange);
+      if(partial) {
+        String[] bounds = range.substring(6).split("-", -1);
+        start = Integer.parseInt(bounds[0]);
+        if(!bounds[1].isEmpty()) end = Integer.parseInt(bounds[1]);
+        exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+      }
+      exchange.getResponseHeaders().add("ETag", ETAG);
+      exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+      exchange.sendResponseHeaders(partial ? 206 : 200, end + 1 - start);
+      try(OutputStream output = exchange.getResponseBody()) {
+        output.write(content, start, end + 1 - start);
+      }
+    });
+    server.start();
+    return server;
+  }
+
+  private static byte[] content(int size) {
+    byte[] content = new byte[size];
+    new Random(42).nextBytes(content);
+    return content;
+  }
+
+  @Test
+  public void DownloaderDownload() throws Exception {
+    byte[] content = content(100_000);
+    List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    HttpServer server = server(content, ranges);
+    try {
+      Path folder = Files.createTempDirectory("updater");
+      URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/plugin.jar");
+
+      assertTrue(Downloader.downloadFile(url, folder));
+      assertArrayEquals(Files.readAllBytes(folder.resolve("plugin.jar")), content);
+      assertEquals(Files.list(folder).count(), 1);
+    }
+    finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void DownloaderResume() throws Exception {
+    byte[] content = content(100_000);
+    List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    HttpServer server = server(content, ranges);
+    try {
+      Path folder = Files.createTempDirectory("updater");
+      URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/plugin.jar");
+
+      // Partial file left by an interrupted download
+      Path part = folder.resolve(".update-" + Integer.toHexString(url.toString().hashCode()) + ".part");
+      Files.write(part, Arrays.copyOf(content, 40_000));
+      Files.write(folder.resolve(part.getFileName() + ".validator"), ETAG.getBytes("UTF-8"));
+
+      assertTrue(Downloader.downloadFile(url, folder));
+      assertEquals(ranges.get(0), "bytes=40000-");
+      assertArrayEquals(Files.readAllBytes(folder.resolve("plugin.jar")), content);
+      assertFalse(Files.exists(part));
+    }
+    finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void DownloaderResumeMismatch() throws Exception {
+    byte[] content = content(100_000);
+    List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/plugin.jar", exchange -> {
+      // Answers a range request with a range starting elsewhere
+      String range = exchange.getRequestHeaders().getFirst("Range");
+      ranges.add(range);
+      if(range != null) {
+        exchange.getResponseHeaders().add("Content-Range", "bytes 0-" + (content.length - 1) + "/" + content.length);
+      }
+      exchange.getResponseHeaders().add("ETag", ETAG);
+      exchange.sendResponseHeaders(range != null ? 206 : 200, content.length);
+      try(OutputStream output = exchange.getResponseBody()) {
+        output.write(content);
+      }
+    });
+    server.start();
+    long retryDelay = Downloader.RETRY_DELAY;
+    try {
+      Downloader.RETRY_DELAY = 10;
+      Path folder = Files.createTempDirectory("updater");
+      URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/plugin.jar");
+      Path part = folder.resolve(".update-" + Integer.toHexString(url.toString().hashCode()) + ".part");
+      Files.write(part, Arrays.copyOf(content, 40_000));
+      Files.write(folder.resolve(part.getFileName() + ".validator"), ETAG.getBytes("UTF-8"));
+
+      // The mismatched response is not appended, the download starts over with a plain request
+      assertTrue(Downloader.downloadFile(url, folder));
+      assertEquals(ranges, Arrays.asList("bytes=40000-", null));
+      assertArrayEquals(Files.readAllBytes(folder.resolve("plugin.jar")), content);
+      assertEquals(Files.list(folder).count(), 1);
+    }
+    finally {
+      Downloader.RETRY_DELAY = retryDelay;
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void DownloaderSegmented() throws Exception {
+    byte[] content = content(1_000_000);
+    List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    HttpServer server = server(content, ranges);
+    long segmentedSize = Downloader.SEGMENTED_SIZE;
+    try {
+      Downloader.SEGMENTED_SIZE = 100_000;
+      Path folder = Files.createTempDirectory("updater");
+      URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/plugin.jar");
+
+      assertTrue(Downloader.downloadFile(url, folder));
+      assertTrue(ranges.contains("bytes=0-249999"));
+      assertTrue(ranges.contains("bytes=750000-999999"));
+      assertArrayEquals(Files.readAllBytes(folder.resolve("plugin.jar")), content);
+      assertEquals(Files.list(folder).count(), 1);
+    }
+    finally {
+      Downloader.SEGMENTED_SIZE = segmentedSize;
+      server.stop(0);
+    }
+  }
+  @Test
+  public void DownloaderSegmentedResume() throws Exception {
+    byte[] content = content(1_000_000);
+    List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    HttpServer server = server(content, ranges, "bytes=750000-999999");
+    long segmentedSize = Downloader.SEGMENTED_SIZE;
+    long retryDelay = Downloader.RETRY_DELAY;
+    try {
+      Downloader.SEGMENTED_SIZE = 100_000;
+      Downloader.RETRY_DELAY = 10;
+      Path folder = Files.createTempDirectory("updater");
+      URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/plugin.jar");
+
+      // The completed segments are kept, the rest is resumed in a single stream
+      assertTrue(Downloader.downloadFile(url, folder));
+      String resume = ranges.get(ranges.size() - 1);
+      assertTrue(resume.endsWith("-") && !resume.equals("bytes=0-"), resume);
+      assertArrayEquals(Files.readAllBytes(folder.resolve("plugin.jar")), content);
+      assertEquals(Files.list(folder).count(), 1);
+    }
+    finally {
+      Downloader.SEGMENTED_SIZE = segmentedSize;
+      Downloader.RETRY_DELAY = retryDelay;
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void DownloaderConcurrent() throws Exception {
+    byte[] content = content(1_000_000);
+    List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    HttpServer server = server(content, ranges);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Downloader.setDownloadRateLimit(4_000_000);
+      Path folder = Files.createTempDirectory("updater");
+      URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/plugin.jar");
+      StringBuilder hex = new StringBuilder();
+      for(byte b : MessageDigest.getInstance("SHA-256").digest(content)) hex.append(String.format("%02x", b));
+
+      // Updaters of the same group download the same file into the same folder, at the same time
+      List<Future<Boolean>> downloads = new ArrayList<>();
+      for(int i = 0; i < 4; i++) {
+        downloads.add(executor.submit(() -> Downloader.downloadFile(url, folder, Checksum.parse("sha256:" + hex))));
+      }
+      for(Future<Boolean> download : downloads) {
+        assertTrue(download.get(30, TimeUnit.SECONDS));
+      }
+      assertArrayEquals(Files.readAllBytes(folder.resolve("plugin.jar")), content);
+      assertEquals(Files.list(folder).count(), 1);
+
+      // The lock of the partial file is forgotten by the last download
+      assertTrue(Downloader.parts.isEmpty());
+    }
+    finally {
+      Downloader.setDownloadRateLimit(0);
+      executor.shutdownNow();
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void DownloaderChecksum() throws Exception {
+    byte[] content = content(100_000);
+    List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    HttpServer server = server(content, ranges);
+    long retryDelay = Downloader.RETRY_DELAY;
+    try {
+      Downloader.RETRY_DELAY = 10;
+      URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/plugin.jar");
+      StringBuilder hex = new StringBuilder();
+      for(byte b : MessageDigest.getInstance("SHA-256").digest(content)) hex.append(String.format("%02x", b));
+
+      // Matching checksum
+      Path folder = Files.createTempDirectory("updater");
+      assertTrue(Downloader.downloadFile(url, folder, Checksum.parse("sha256:" + hex)));
+      assertArrayEquals(Files.readAllBytes(folder.resolve("plugin.jar")), content);
+
+      // Wrong checksum: nothing is installed
+      Path other = Files.createTempDirectory("updater");
+      assertThrows(IOException.class, () -> Downloader.downloadFile(url, other, Checksum.parse("sha256:" + hex.reverse())));
+      assertEquals(Files.list(other).count(), 0);
+
+      // A bare digest is read from its length, a mistyped one is rejected
+      assertEquals(Checksum.parse(hex.toString()).algorithm(), "SHA-256");
+      assertEquals(Checksum.parse(hex.substring(0, 40)).algorithm(), "SHA-1");
+      assertThrows(IllegalArgumentException.class, () -> Checksum.parse(hex.substring(0, 63)));
+      assertThrows(IllegalArgumentException.class, () -> Checksum.parse("sha256:" + hex.substring(0, 40)));
+    }
+    finally {
+      Downloader.RETRY_DELAY = retryDelay;
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void DownloaderExisting() throws Exception {
+    byte[] content = content(100_000);
+    List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    HttpServer server = server(content, ranges);
+    try {
+      URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/plugin.jar");
+      StringBuilder hex = new StringBuilder();
+      for(byte b : MessageDigest.getInstance("SHA-256").digest(content)) hex.append(String.format("%02x", b));
+
+      // A stale file with the same name is replaced
+      Path folder = Files.createTempDirectory("updater");
+      Files.write(folder.resolve("plugin.jar"), Arrays.copyOf(content, 100));
+      assertTrue(Downloader.downloadFile(url, folder));
+      assertArrayEquals(Files.readAllBytes(folder.resolve("plugin.jar")), content);
+
+      // Same size, but not matching the checksum
+      Files.write(folder.resolve("plugin.jar"), new byte[content.length]);
+      assertTrue(Downloader.downloadFile(url, folder, Checksum.parse("sha256:" + hex)));
+      assertArrayEquals(Files.readAllBytes(folder.resolve("plugin.jar")), content);
+
+      // A verified file is kept
+      assertTrue(Downloader.isDownloaded(folder.resolve("plugin.jar"), Checksum.parse("sha256:" + hex), -1));
+      assertFalse(Downloader.isDownloaded(folder.resolve("plugin.jar"), Checksum.parse("sha256:" + hex.reverse()), -1));
+      assertFalse(Downloader.isDownloaded(folder.resolve("other.jar"), null, -1));
+    }
+    finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void DownloaderRateLimit() throws Exception {
+    byte[] content = content(100_000);
+    List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    HttpServer server = server(content, ranges);
+    try {
+      Downloader.setDownloadRateLimit(200_000);
+      Path folder = Files.createTempDirectory("updater");
+      URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/plugin.jar");
+
+      // 100 kB at 200 kB/s
+      long start = System.nanoTime();
+      assertTrue(Downloader.downloadFile(url, folder));
+      assertTrue(System.nanoTime() - start >= 400_000_000L);
+      assertArrayEquals(Files.readAllBytes(folder.resolve("plugin.jar")), content);
+    }
+    finally {
+      Downloader.setDownloadRateLimit(0);
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void DownloaderListener() throws Exception {
+    byte[] content = content(100_000);
+    List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    HttpServer server = server(content, ranges);
+    long retryDelay = Downloader.RETRY_DELAY;
+    try {
+      Downloader.RETRY_DELAY = 10;
+      URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/plugin.jar");
+      List<String> events = Collections.synchronizedList(new ArrayList<>());
+      DownloadListener listener = new DownloadListener() {
+        @Override
+        public void onStart(DownloadProgress progress) {
+          events.add("start " + progress.total());
+        }
+
+        @Override
+        public void onComplete(DownloadProgress progress, Path file) {
+          events.add("complete " + progress.bytes() + " " + (progress.timeToFirstByte() >= 0));
+        }
+
+        @Override
+        public void onFailure(DownloadProgress progress, IOException cause, boolean retry) {
+          events.add("failure " + progress.attempt() + " " + retry);
+        }
+      };
+
+      assertTrue(Downloader.downloadFile(url, Files.createTempDirectory("updater"), null, listener));
+      assertEquals(events, Arrays.asList("start 100000", "complete 100000 true"));
+
+      // Every failed attempt is reported with its cause
+      events.clear();
+      Checksum wrong = Checksum.parse("sha256:" + String.join("", Collections.nCopies(64, "0")));
+      assertThrows(IOException.class, () -> Downloader.downloadFile(url, Files.createTempDirectory("updater"), wrong, listener));
+      assertEquals(events.get(events.size() - 1), "failure 3 false");
+
+      // An error status is a failure too, with its status as cause
+      events.clear();
+      URL missing = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/missing.jar");
+      IOException cause = assertThrows(IOException.class, () -> Downloader.downloadFile(missing, Files.createTempDirectory("updater"), null, listener));
+      assertTrue(cause.getMessage().contains("404"));
+      assertEquals(events, Arrays.asList("failure 1 true", "failure 2 true", "failure 3 false"));
+    }
+    finally {
+      Downloader.RETRY_DELAY = retryDelay;
+      server.stop(0);
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitsTest {
+
+  /**
+   * Server answering with the given status and headers, counting the requests
+   */
+  private static HttpServer server(int status, AtomicInteger requests, String... headers) throws Exception {
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", exchange -> {
+      requests.incrementAndGet();
+      for(int i = 0; i < headers.length; i += 2) exchange.getResponseHeaders().add(headers[i], headers[i + 1]);
+      exchange.sendResponseHeaders(status, -1);
+      exchange.close();
+    });
+    server.start();
+    return server;
+  }
+
+  private static URL url(HttpServer server) throws Exception {
+    return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/releases");
+  }
+
+  @Test
+  public void RateLimitsExhausted() throws Exception {
+    AtomicInteger requests = new AtomicInteger();
+    long reset = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 60;
+    HttpServer server = server(200, requests, "X-RateLimit-Limit", "60", "X-RateLimit-Remaining", "0", "X-RateLimit-Reset", String.valueOf(reset));
+    try {
+      RateLimits.clear();
+      HttpConnection.close(HttpConnection.openConnection(url(server)));
+
+      // The next request waits for the reset and is not sent
+      RateLimitedException e = assertThrows(RateLimitedException.class, () -> HttpConnection.openConnection(url(server)));
+      assertEquals(e.retryAt(), TimeUnit.SECONDS.toMillis(reset));
+      assertEquals(requests.get(), 1);
+    }
+    finally {
+      server.stop(0);
+      RateLimits.clear();
+    }
+  }
+
+  @Test
+  public void RateLimitsResources() throws Exception {
+    AtomicInteger requests = new AtomicInteger();
+    long reset = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 60;
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", exchange -> {
+      requests.incrementAndGet();
+      boolean graphql = exchange.getRequestURI().getPath().startsWith("/graphql");
+      exchange.getResponseHeaders().add("X-RateLimit-Resource", graphql ? "graphql" : "core");
+      exchange.getResponseHeaders().add("X-RateLimit-Remaining", graphql ? "4999" : "0");
+      exchange.getResponseHeaders().add("X-RateLimit-Reset", String.valueOf(reset));
+      exchange.sendResponseHeaders(200, -1);
+      exchange.close();
+    });
+    server.start();
+    try {
+      RateLimits.clear();
+      String host = "http://127.0.0.1:" + server.getAddress().getPort();
+      HttpConnection.close(HttpConnection.openConnection(new URL(host + "/repos/owner/name/releases")));
+      HttpConnection.close(HttpConnection.openConnection(new URL(host + "/graphql")));
+
+      // The exhausted REST budget does not hold the GraphQL requests, and the reverse
+      assertThrows(RateLimitedException.class, () -> HttpConnection.openConnection(new URL(host + "/repos/owner/other/releases")));
+      HttpConnection.close(HttpConnection.openConnection(new URL(host + "/graphql")));
+      assertEquals(requests.get(), 3);
+    }
+    finally {
+      server.stop(0);
+      RateLimits.clear();
+    }
+  }
+
+  @Test
+  public void RateLimitsRetryAfter() throws Exception {
+    AtomicInteger requests = new AtomicInteger();
+    HttpServer server = server(429, requests, "Retry-After", "120");
+    try {
+      RateLimits.clear();
+      long now = System.currentTimeMillis();
+      RateLimitedException e = assertThrows(RateLimitedException.class, () -> HttpConnection.openConnection(url(server)));
+      assertTrue(e.retryAt() >= now + TimeUnit.SECONDS.toMillis(120));
+      assertTrue(e.retryAt() <= System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(120));
+
+      assertThrows(RateLimitedException.class, () -> HttpConnection.openConnection(url(server)));
+      assertEquals(requests.get(), 1);
+    }
+    finally {
+      server.stop(0);
+      RateLimits.clear();
+    }
+  }
+
+  @Test
+  public void RateLimitsSpread() throws Exception {
+    AtomicInteger requests = new AtomicInteger();
+    long reset = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 60;
+    HttpServer server = server(200, requests, "X-RateLimit-Limit", "100", "X-RateLimit-Remaining", "5", "X-RateLimit-Reset", String.valueOf(reset));
+    try {
+      RateLimits.clear();
+      HttpConnection.close(HttpConnection.openConnection(url(server)));
+      long now = System.currentTimeMillis();
+
+      // 5 requests left for about 60 seconds, one every 12 seconds
+      HttpConnection.close(HttpConnection.openConnection(url(server)));
+      RateLimitedException e = assertThrows(RateLimitedException.class, () -> HttpConnection.openConnection(url(server)));
+      assertTrue(e.retryAt() > now + TimeUnit.SECONDS.toMillis(10));
+      assertTrue(e.retryAt() <= now + TimeUnit.SECONDS.toMillis(13));
+      assertEquals(requests.get(), 2);
+    }
+    finally {
+      server.stop(0);
+      RateLimits.clear();
+    }
+  }
+}
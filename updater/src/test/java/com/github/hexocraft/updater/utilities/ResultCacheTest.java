@@ -0,0 +1,80 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.github.hexocraft.updater.utilities;
+
+import com.github.hexocraft.updater.Update;
+import com.github.hexocraft.updater.Version;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTest {
+
+  @Test
+  public void ResultCachePersist() throws Exception {
+    Path file = Files.createTempDirectory("updater").resolve("cache.json");
+    Update update = new Update("title", Version.parse("1.2.3-beta+42"), new URL("https://example.com/file.jar"), "description");
+
+    new ResultCache(file, TimeUnit.HOURS.toMillis(1)).put("github:url", update, Collections.singletonMap("url", new Validator("\"etag\"", null)));
+
+    ResultCache cache = new ResultCache(file, TimeUnit.HOURS.toMillis(1));
+    ResultCache.Entry entry = cache.get("github:url");
+    assertNotNull(entry);
+    assertTrue(cache.isFresh(entry));
+    assertEquals(entry.update().title(), "title");
+    assertEquals(entry.update().version(), new Version(1, 2, 3, "beta", "42"));
+    assertEquals(entry.update().version().getPreRelease(), "beta");
+    assertEquals(entry.update().downloadUrl().toString(), "https://example.com/file.jar");
+    assertEquals(entry.validators().get("url").etag(), "\"etag\"");
+    assertNull(cache.get("spigot:url"));
+  }
+
+  @Test
+  public void ResultCacheExpire() throws Exception {
+    Path file = Files.createTempDirectory("updater").resolve("cache.json");
+    ResultCache cache = new ResultCache(file, 0);
+    cache.put("github:url", new Update("title", new Version(1, 0, 0)), Collections.emptyMap());
+
+    assertFalse(cache.isFresh(cache.get("github:url")));
+
+    // Expired entries are not written
+    assertNull(new ResultCache(file, 0).get("github:url"));
+  }
+
+  @Test
+  public void ResultCacheShared() throws Exception {
+    Path file = Files.createTempDirectory("updater").resolve("cache.json");
+    ResultCache first = new ResultCache(file, TimeUnit.HOURS.toMillis(1));
+    ResultCache second = new ResultCache(file, TimeUnit.HOURS.toMillis(1));
+
+    // Both caches loaded the file before the other one wrote it
+    assertNull(first.get("github:url"));
+    assertNull(second.get("spigot:url"));
+    first.put("github:url", new Update("first", new Version(1, 0, 0)), Collections.emptyMap());
+    second.put("spigot:url", new Update("second", new Version(2, 0, 0)), Collections.emptyMap());
+
+    ResultCache cache = new ResultCache(file, TimeUnit.HOURS.toMillis(1));
+    assertEquals(cache.get("github:url").update().title(), "first");
+    assertEquals(cache.get("spigot:url").update().title(), "second");
+  }
+}
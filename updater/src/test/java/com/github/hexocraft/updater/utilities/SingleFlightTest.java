@@ -0,0 +1,87 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.hexocraft.updater.utilities;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+  @Test
+  public void SingleFlightCoalesce() throws Exception {
+    SingleFlight flights = new SingleFlight(TimeUnit.SECONDS.toMillis(5));
+    AtomicInteger requests = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    String key = SingleFlight.key(new URL("http://localhost/releases"), Collections.singletonMap("Accept", "application/json"));
+
+    // 8 concurrent callers, a single request
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<CompletableFuture<String>> calls = new ArrayList<>();
+    for(int i = 0; i < 8; i++) {
+      calls.add(CompletableFuture.supplyAsync(() -> flights.call(key, () -> {
+        requests.incrementAndGet();
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        }
+        catch(InterruptedException ignored) {
+        }
+        return "1.0.0";
+      }, result -> true), executor));
+    }
+    Thread.sleep(200);
+    release.countDown();
+    for(CompletableFuture<String> call : calls) assertEquals(call.get(5, TimeUnit.SECONDS), "1.0.0");
+    executor.shutdown();
+    assertEquals(requests.get(), 1);
+
+    // The result is reused within the window
+    assertEquals(flights.call(key, () -> "2.0.0", result -> true), "1.0.0");
+
+    // Other headers are another request
+    String other = SingleFlight.key(new URL("http://localhost/releases"), Collections.singletonMap("X-API-Key", "key"));
+    assertEquals(flights.call(other, () -> "2.0.0", result -> true), "2.0.0");
+  }
+
+  @Test
+  public void SingleFlightNotReusable() throws Exception {
+    SingleFlight flights = new SingleFlight(TimeUnit.SECONDS.toMillis(5));
+    String key = SingleFlight.key(new URL("http://localhost/releases"), Collections.emptyMap());
+
+    // Failed requests are not reused
+    assertNull(flights.call(key, () -> null, result -> result != null));
+    assertEquals(flights.size(), 0);
+    assertEquals(flights.call(key, () -> "1.0.0", result -> result != null), "1.0.0");
+
+    // Without window, only requests in flight are shared
+    flights.setWindow(0);
+    assertEquals(flights.call(key, () -> "2.0.0", result -> true), "2.0.0");
+    assertEquals(flights.size(), 0);
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ *    Copyright 2015-2020 hexosse <hexosse@gmail.com>
+ *
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.github.hexocraft.updater.utilities;
+
+import com.github.hexocraft.updater.enumeration.Result;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdaterMetricsTest {
+
+  @Test
+  public void UpdaterMetricsRequests() throws Exception {
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", exchange -> {
+      exchange.sendResponseHeaders(404, -1);
+      exchange.close();
+    });
+    server.start();
+    try {
+      UpdaterMetrics metrics = UpdaterMetrics.builtIn();
+      metrics.reset();
+      URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/missing");
+
+      HttpURLConnection connection = HttpConnection.openConnection(url);
+      HttpConnection.close(connection);
+
+      assertEquals((long) metrics.getRequests().get("127.0.0.1 404"), 1L);
+      assertEquals((long) metrics.getRequestLatency().get("127.0.0.1 count"), 1L);
+      assertEquals(metrics.getInFlightRequests(), 0L);
+
+      // A failed download is not counted as a success
+      assertThrows(IOException.class, () -> Downloader.downloadFile(url, Files.createTempDirectory("updater")));
+      assertEquals((long) metrics.getDownloads().get("127.0.0.1 failure"), 1L);
+      assertNull(metrics.getDownloads().get("127.0.0.1 success"));
+    }
+    finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void UpdaterMetricsMBean() throws Exception {
+    UpdaterMetrics metrics = UpdaterMetrics.builtIn();
+    metrics.reset();
+    metrics.onCheck("GithubChannel", Result.SUCCESS, TimeUnit.MILLISECONDS.toNanos(40));
+    metrics.onCheck("GithubChannel", Result.SUCCESS, TimeUnit.MILLISECONDS.toNanos(400));
+
+    Map<String, Long> latency = metrics.getCheckLatency();
+    assertEquals((long) latency.get("GithubChannel le=50"), 1L);
+    assertEquals((long) latency.get("GithubChannel le=500"), 2L);
+    assertEquals((long) latency.get("GithubChannel sum"), 440L);
+
+    UpdaterMetrics.registerMBean();
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    TabularData checks = (TabularData) server.getAttribute(new ObjectName(UpdaterMetrics.OBJECT_NAME), "Checks");
+    assertEquals(checks.get(new Object[]{"GithubChannel SUCCESS"}).get("value"), 2L);
+  }
+}
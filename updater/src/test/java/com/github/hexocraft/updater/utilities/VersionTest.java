@@ -20,7 +20,13 @@ import com.github.hexocraft.updater.Version;
 import com.github.hexocraft.updater.enumeration.Release;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -35,6 +41,31 @@ class VersionTest {
     assertEquals(version.getPatch(), 3);
   }
 
+  @Test
+  public void VersionParseFull() {
+    Version version = Objects.requireNonNull(Version.parse("Plugin v10.0.7-beta.1+build-42"));
+
+    assertEquals(version.getMajor(), 10);
+    assertEquals(version.getMinor(), 0);
+    assertEquals(version.getPatch(), 7);
+    assertEquals(version.getPreRelease(), "beta.1");
+    assertEquals(version.getBuild(), "build-42");
+    assertEquals(Objects.requireNonNull(Version.parse("1.2")).getPatch(), 0);
+  }
+
+  @Test
+  public void VersionIsNotSemver() {
+    assertFalse(Version.isSemver("01.2.3"));
+    assertFalse(Version.isSemver("1.02"));
+    assertFalse(Version.isSemver("1.2.3.4"));
+    assertFalse(Version.isSemver("1.2.3-"));
+    assertFalse(Version.isSemver("1.2.3-01"));
+    assertFalse(Version.isSemver("1.2.3+"));
+    assertFalse(Version.isSemver("1.2.3 beta"));
+    assertFalse(Version.isSemver("1.-beta"));
+    assertFalse(Version.isSemver("99999999999.0"));
+  }
+
   @Test
   public void VersionIsSemver() {
     assertTrue(Version.isSemver("1.2.3"));
@@ -55,10 +86,39 @@ class VersionTest {
   @Test
   public void VersionComparison() {
     assertTrue(Objects.requireNonNull(Version.parse("1.2.3")).equals(new Version(1, 2, 3)));
+    assertFalse(new Version(1, 0, 0, "beta", null).equals(new Version(1, 0, 0)));
     assertTrue(Objects.requireNonNull(Version.parse("1.2.3")).isLower(Objects.requireNonNull(Version.parse("1.2.4"))));
     assertTrue(Objects.requireNonNull(Version.parse("1.2.3")).isGreater(Objects.requireNonNull(Version.parse("1.2.2"))));
   }
 
+  @Test
+  public void VersionPrecedence() {
+    List<String> ordered = Arrays.asList("1.0.0-alpha", "1.0.0-alpha.1", "1.0.0-alpha.beta", "1.0.0-beta", "1.0.0-beta.2",
+        "1.0.0-beta.11", "1.0.0-rc.1", "1.0.0", "1.0.1", "1.1.0", "2.0.0", "3000000.0.0");
+    List<Version> versions = new ArrayList<>();
+    for(String version : ordered) versions.add(Version.parse(version));
+    Collections.shuffle(versions, new Random(42));
+    Collections.sort(versions);
+
+    for(int i = 0; i < ordered.size(); i++) {
+      assertEquals(versions.get(i), Version.parse(ordered.get(i)));
+    }
+    assertTrue(Objects.requireNonNull(Version.parse("1.2.3-SNAPSHOT")).isLower(new Version(1, 2, 3)));
+    assertFalse(Objects.requireNonNull(Version.parse("1.2.3+build.1")).isGreater(new Version(1, 2, 3)));
+  }
+
+  @Test
+  public void VersionHash() {
+    Version version = Version.parse("1.2.3-beta+42");
+    Version same = Version.parse("v1.2.3-beta+42");
+
+    assertEquals(version, same);
+    assertEquals(version.hashCode(), same.hashCode());
+    assertNotEquals(version, Version.parse("1.2.3-beta+43"));
+    assertSame(version.intern(), same.intern());
+    assertEquals(new HashSet<>(Arrays.asList(version, same, new Version(1, 2, 3))).size(), 2);
+  }
+
   @Test
   public void VersionReleaseTest() {
     assertSame(Objects.requireNonNull(Version.parse("1.2.3")).getRelease(), Release.RELEASE);